@@ -0,0 +1,9 @@
+package com.github.kubatatami.steppers.benchmark;
+
+import android.support.v4.app.FragmentActivity;
+
+/**
+ * Hosts the steppers under benchmark, which need a fragment manager.
+ */
+public class BenchmarkActivity extends FragmentActivity {
+}
@@ -0,0 +1,20 @@
+package com.github.kubatatami.steppers.benchmark;
+
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Minimal step content, so the benchmarks measure the stepper rather than the steps.
+ */
+public class BenchmarkFragment extends Fragment {
+
+    @Nullable
+    @Override
+    public View onCreateView(LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        return new View(inflater.getContext());
+    }
+}
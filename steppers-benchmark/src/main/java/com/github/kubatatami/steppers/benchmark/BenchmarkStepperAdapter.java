@@ -0,0 +1,43 @@
+package com.github.kubatatami.steppers.benchmark;
+
+import android.support.v4.app.Fragment;
+
+import com.github.kubatatami.StepperAdapter;
+
+/**
+ * Steps with precomputed labels, so label formatting does not show up in the results.
+ */
+public class BenchmarkStepperAdapter implements StepperAdapter {
+
+    private final String[] labels;
+    private final String[] subLabels;
+
+    public BenchmarkStepperAdapter(int stepCount) {
+        labels = new String[stepCount];
+        subLabels = new String[stepCount];
+        for (int i = 0; i < stepCount; i++) {
+            labels[i] = "Step " + (i + 1);
+            subLabels[i] = "Sub label " + (i + 1);
+        }
+    }
+
+    @Override
+    public String getLabel(int step) {
+        return labels[step];
+    }
+
+    @Override
+    public String getSubLabel(int step) {
+        return subLabels[step];
+    }
+
+    @Override
+    public Fragment getFragment(int step) {
+        return new BenchmarkFragment();
+    }
+
+    @Override
+    public int getStepCount() {
+        return labels.length;
+    }
+}
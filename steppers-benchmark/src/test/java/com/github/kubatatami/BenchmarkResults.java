@@ -0,0 +1,77 @@
+package com.github.kubatatami;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times operations and counts the bytes they allocate on the calling thread, then writes
+ * the results as JSON lines: one object per benchmark and step count.
+ */
+final class BenchmarkResults {
+
+    static final String OUTPUT_DIR_PROPERTY = "benchmark.outputDir";
+
+    private static final int WARMUP_ITERATIONS = 50;
+
+    interface Operation {
+
+        void run(int iteration);
+    }
+
+    private final List<String> lines = new ArrayList<>();
+
+    /**
+     * Runs the operation for warm up first, then measures the given number of iterations.
+     */
+    void measure(String name, int stepCount, int iterations, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run(i);
+        }
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run(i);
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = startBytes >= 0 ? allocatedBytes() - startBytes : -1;
+        String line = "{\"benchmark\":\"" + name + "\",\"steps\":" + stepCount + ",\"iterations\":" + iterations
+                + ",\"nanosPerOp\":" + nanos / iterations + ",\"bytesPerOp\":" + (bytes >= 0 ? bytes / iterations : -1) + "}";
+        lines.add(line);
+    }
+
+    void write(String fileName) throws IOException {
+        File dir = new File(System.getProperty(OUTPUT_DIR_PROPERTY, "build/outputs/benchmark"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        Writer writer = new FileWriter(new File(dir, fileName));
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return bytes allocated by this thread so far, or -1 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
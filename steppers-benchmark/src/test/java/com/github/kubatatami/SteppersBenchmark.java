@@ -0,0 +1,185 @@
+package com.github.kubatatami;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.github.kubatatami.steppers.benchmark.BenchmarkActivity;
+import com.github.kubatatami.steppers.benchmark.BenchmarkStepperAdapter;
+import com.github.kubatatami.steppers.benchmark.BuildConfig;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Hot paths of the stepper on the JVM. Run with {@code ./gradlew :steppers-benchmark:testDebugUnitTest};
+ * results are written to {@code steppers-benchmark/build/outputs/benchmark/results.jsonl}.
+ * Robolectric's graphics are not the device's, so only compare results between builds.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SteppersBenchmark {
+
+    private static final int[] STEP_COUNTS = {10, 100, 1000};
+    private static final int ITERATIONS = 1000;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int CIRCLE_SIZE = 72;
+
+    private static final BenchmarkResults results = new BenchmarkResults();
+
+    private BenchmarkActivity activity;
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.setupActivity(BenchmarkActivity.class);
+    }
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        results.write("results.jsonl");
+    }
+
+    @Test
+    public void bindViewHolder() {
+        for (int stepCount : STEP_COUNTS) {
+            measureBind("bindViewHolder", createSteppersView(stepCount, false), stepCount);
+            measureBind("bindViewHolderFlatRows", createSteppersView(stepCount, true), stepCount);
+        }
+    }
+
+    @Test
+    public void drawCircle() {
+        final RoundedView view = new RoundedView(activity);
+        view.measure(View.MeasureSpec.makeMeasureSpec(CIRCLE_SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(CIRCLE_SIZE, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, CIRCLE_SIZE, CIRCLE_SIZE);
+        view.setText("1");
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(CIRCLE_SIZE, CIRCLE_SIZE, Bitmap.Config.ARGB_8888));
+        results.measure("roundedViewOnDraw", 1, ITERATIONS, new BenchmarkResults.Operation() {
+            @Override
+            public void run(int iteration) {
+                view.onDraw(canvas);
+            }
+        });
+    }
+
+    @Test
+    public void nextAndPrevStep() {
+        for (final int stepCount : STEP_COUNTS) {
+            final SteppersView view = createSteppersView(stepCount, false);
+            // walks forward through all steps, then back
+            results.measure("nextPrevStep", stepCount, ITERATIONS, new BenchmarkResults.Operation() {
+
+                private boolean forward = true;
+
+                @Override
+                public void run(int iteration) {
+                    int step = view.getCurrentStep();
+                    if (step == stepCount - 1) {
+                        forward = false;
+                    } else if (step == 0) {
+                        forward = true;
+                    }
+                    if (forward) {
+                        view.nextStep();
+                    } else {
+                        view.prevStep();
+                    }
+                    layout(view);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void setStep() {
+        for (final int stepCount : STEP_COUNTS) {
+            final SteppersView view = createSteppersView(stepCount, false);
+            final int[] targets = randomSteps(stepCount);
+            results.measure("setStep", stepCount, ITERATIONS, new BenchmarkResults.Operation() {
+                @Override
+                public void run(int iteration) {
+                    view.setStep(targets[iteration % targets.length]);
+                    layout(view);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void setStyle() {
+        for (int stepCount : STEP_COUNTS) {
+            final SteppersView view = createSteppersView(stepCount, false);
+            final StepperStyle[] styles = {
+                    view.getStyle(),
+                    view.getStyle().buildUpon().setCircleActiveColor(Color.RED).setLabelTextSize(48).build()
+            };
+            results.measure("setStyle", stepCount, ITERATIONS, new BenchmarkResults.Operation() {
+                @Override
+                public void run(int iteration) {
+                    view.setStyle(styles[iteration % styles.length]);
+                    layout(view);
+                }
+            });
+        }
+    }
+
+    private void measureBind(String name, SteppersView view, int stepCount) {
+        final InternalSteppersAdapter adapter = getInternalAdapter(view);
+        RecyclerView recyclerView = (RecyclerView) view.getChildAt(0);
+        final SteppersViewHolder holder = adapter.onCreateViewHolder(recyclerView, adapter.getItemViewType(0));
+        final int itemCount = adapter.getItemCount();
+        results.measure(name, stepCount, ITERATIONS, new BenchmarkResults.Operation() {
+            @Override
+            public void run(int iteration) {
+                adapter.onBindViewHolder(holder, iteration % itemCount);
+            }
+        });
+    }
+
+    private SteppersView createSteppersView(int stepCount, boolean flatRows) {
+        SteppersView view = new SteppersView(activity);
+        view.setFlatRows(flatRows);
+        view.setFragmentManager(activity.getSupportFragmentManager());
+        activity.setContentView(view);
+        view.setAdapter(new BenchmarkStepperAdapter(stepCount));
+        layout(view);
+        return view;
+    }
+
+    private static InternalSteppersAdapter getInternalAdapter(SteppersView view) {
+        return (InternalSteppersAdapter) ((RecyclerView) view.getChildAt(0)).getAdapter();
+    }
+
+    /**
+     * Runs what would happen in the next frame: posted fragment changes and a layout pass.
+     */
+    private static void layout(SteppersView view) {
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static int[] randomSteps(int stepCount) {
+        // the same sequence on every run, so results can be compared
+        Random random = new Random(stepCount);
+        int[] steps = new int[ITERATIONS];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = random.nextInt(stepCount);
+        }
+        return steps;
+    }
+}
@@ -51,6 +51,10 @@ public class BlankFragment extends Fragment {
             }
         });
         textView.setText(getString(R.string.hello_blank_fragment) + " " + getArguments().getInt(KEY_NR));
+        // every third step has content taller than the screen, to check how it is revealed
+        if (getArguments().getInt(KEY_NR) % 3 == 0) {
+            view.findViewById(R.id.tallContent).setVisibility(View.VISIBLE);
+        }
         return view;
     }
 }
@@ -22,6 +22,11 @@ public class MainActivity extends AppCompatActivity {
         steppersView = (SteppersView) findViewById(R.id.steppersView);
         steppersView.setFragmentManager(getSupportFragmentManager());
         steppersView.setBackByTap(false);
+        // "Done" sub labels below
+        steppersView.setSubLabelFollowsState(true);
+        if (BuildConfig.DEBUG) {
+            steppersView.setMetricsListener(new MetricsLogger());
+        }
         steppersView.setAdapter(new StepperAdapter() {
             @Override
             public String getLabel(int step) {
@@ -0,0 +1,38 @@
+package com.github.kubatatami.steppers.sample;
+
+import android.util.Log;
+
+import com.github.kubatatami.StepperMetricsListener;
+
+/**
+ * Logs stepper timings as tab separated lines: metric, step or row, duration in nanoseconds.
+ * Collect them with {@code adb logcat -s SteppersMetrics} to compare builds.
+ */
+public class MetricsLogger implements StepperMetricsListener {
+
+    private static final String TAG = "SteppersMetrics";
+
+    @Override
+    public void onRowBound(int position, long durationNanos) {
+        log("bindRow", position, durationNanos);
+    }
+
+    @Override
+    public void onFragmentCreated(int step, long durationNanos) {
+        log("createFragment", step, durationNanos);
+    }
+
+    @Override
+    public void onFragmentTransaction(long durationNanos) {
+        log("fragmentTransaction", -1, durationNanos);
+    }
+
+    @Override
+    public void onStepTransition(int fromStep, int toStep, long durationNanos) {
+        log("stepTransition", toStep, durationNanos);
+    }
+
+    private static void log(String metric, int index, long durationNanos) {
+        Log.d(TAG, metric + "\t" + index + "\t" + durationNanos);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RoundedViewDrawTest {
+
+    private static final int SIZE = 48;
+    private static final int DRAW_COUNT = 100;
+
+    private int allocations;
+    private boolean glyphShown;
+
+    @Test
+    public void drawingNumberDoesNotAllocate() {
+        assertEquals(0, countDrawAllocations(false, false));
+        assertTrue(glyphShown);
+    }
+
+    @Test
+    public void drawingCheckMarkDoesNotAllocate() {
+        assertEquals(0, countDrawAllocations(true, false));
+        assertTrue(glyphShown);
+    }
+
+    @Test
+    public void drawingPendingNumberDoesNotAllocate() {
+        assertEquals(0, countDrawAllocations(false, true));
+        assertTrue(glyphShown);
+    }
+
+    private int countDrawAllocations(final boolean checked, final boolean pending) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                allocations = drawAndCountAllocations(checked, pending);
+            }
+        });
+        return allocations;
+    }
+
+    @SuppressWarnings("deprecation")
+    private int drawAndCountAllocations(boolean checked, boolean pending) {
+        RoundedView view = new RoundedView(InstrumentationRegistry.getTargetContext());
+        view.measure(View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, SIZE, SIZE);
+        // a check mark replaces the text, so the text is set last
+        if (checked) {
+            view.setChecked(true);
+        } else {
+            view.setText("1");
+        }
+        view.setPending(pending);
+        glyphShown = view.getCircle().getGlyph() != null;
+        Canvas canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        view.onDraw(canvas);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < DRAW_COUNT; i++) {
+            view.onDraw(canvas);
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+}
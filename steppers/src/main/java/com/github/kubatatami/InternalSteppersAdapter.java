@@ -16,156 +16,1115 @@
 
 package com.github.kubatatami;
 
-import android.graphics.Typeface;
+import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
-import android.support.v4.app.FragmentTransaction;
+import android.support.v4.util.LongSparseArray;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.RecyclerView;
-import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
 import com.github.kubatatami.steppers.R;
 
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.List;
+
 public class InternalSteppersAdapter extends RecyclerView.Adapter<SteppersViewHolder> {
 
+    private static final int VIEW_TYPE_DEFAULT = 0;
+    private static final int VIEW_TYPE_FLAT = 1;
+    private static final int VIEW_TYPE_SUMMARY = 2;
+    private static final int VIEW_TYPE_RAIL = 3;
+    private static final int TEXT_PREFETCH_DISTANCE = 3;
+    private static final int VISIBLE_DONE_STEPS = 1;
+    private static final int VISIBLE_NEXT_STEPS = 2;
+    private static final int MIN_COLLAPSED_STEPS = 2;
+    private static final long HEAD_SUMMARY_ID = Long.MAX_VALUE;
+    private static final long TAIL_SUMMARY_ID = Long.MAX_VALUE - 1;
+
+    /**
+     * Partial rebind payloads. Rows rebound with a payload only touch the views it concerns.
+     */
+    enum Payload {
+        /** Current step or step positions changed: circle, colors, lines, click state and content visibility. */
+        STATE,
+        /** Label or sub label text of the step changed. */
+        LABEL,
+        /** Sent along with {@link #STATE} when sub labels follow the step state. */
+        SUB_LABEL,
+        /** Colors or text sizes of the view changed. */
+        STYLE
+    }
+
     private SteppersView steppersView;
     private FragmentManager fragmentManager;
-    private int currentStep = 0;
+    private long currentStepId = RecyclerView.NO_ID;
     private StepperAdapter adapter;
+    private final StepTextLayoutCache textLayoutCache;
+    private final StepFragmentScheduler fragmentScheduler;
+    private final StepperMetrics metrics = new StepperMetrics();
+    private final StepStateEngine stateEngine = new StepStateEngine();
+    private final StepValidation validation;
+    private final LongSparseArray<Integer> contentContainerIds = new LongSparseArray<>();
+    private LongSparseArray<Integer> stepPositions;
+    private SteppersViewHolder activeHolder;
+    private RecyclerView recyclerView;
+    private int textPrefetchedFrom = 0;
+    private int textPrefetchedTo = -1;
+    private int submitGeneration;
+    private boolean applyingSteps;
+    private final ArrayDeque<View> preInflatedRows = new ArrayDeque<>();
+    private int preInflateCount;
+    private int preInflatedLayout;
+    private boolean collapseDoneSteps;
+    private boolean collapseNextSteps;
+    private boolean doneStepsExpanded;
+    private boolean nextStepsExpanded;
+    private int firstRowStep;
+    private int lastRowStep = -1;
+    private SteppersView.SavedState pendingState;
+    private LongSparseArray<Bundle> pendingStepStates;
 
     public InternalSteppersAdapter(SteppersView steppersView, FragmentManager fragmentManager) {
         this.steppersView = steppersView;
         this.fragmentManager = fragmentManager;
+        this.textLayoutCache = new StepTextLayoutCache(steppersView.getResources().getDisplayMetrics().density);
+        this.fragmentScheduler = new StepFragmentScheduler(this, fragmentManager, steppersView);
+        this.validation = new StepValidation(new StepValidation.Callback() {
+            @Override
+            public void onStepValidated(long stepId, boolean valid) {
+                InternalSteppersAdapter.this.onStepValidated(stepId, valid);
+            }
+
+            @Override
+            public void onValidationError(long stepId, Throwable error) {
+                InternalSteppersAdapter.this.onValidationError(stepId, error);
+            }
+        });
         setHasStableIds(true);
+        registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                onStepsChanged(RecyclerView.NO_POSITION);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                onStepsChanged(positionStart);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                onStepsChanged(positionStart);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                onStepsChanged(Math.min(fromPosition, toPosition));
+            }
+        });
     }
 
     @Override
-    public SteppersViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        return new SteppersViewHolder(LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_steppers, parent, false));
+    public int getItemViewType(int position) {
+        if (isSummary(position)) {
+            return VIEW_TYPE_SUMMARY;
+        }
+        if (steppersView.isFlatRows()) {
+            return VIEW_TYPE_FLAT;
+        }
+        return steppersView.isRailDecoration() ? VIEW_TYPE_RAIL : VIEW_TYPE_DEFAULT;
+    }
+
+    private int getRowLayout() {
+        return steppersView.isRailDecoration() ? R.layout.item_steppers_rail : R.layout.item_steppers;
     }
 
     @Override
-    public void onBindViewHolder(final SteppersViewHolder holder, int position) {
-        holder.setChecked(position < currentStep);
-        if (holder.isChecked()) {
-            holder.roundedView.setChecked(true);
-        } else {
-            holder.roundedView.setChecked(false);
-            holder.roundedView.setText(position + 1 + "");
-        }
-
-        if (position == currentStep) {
-            holder.roundedView.setCircleColor(steppersView.getCircleActiveColor());
-            holder.textViewLabel.setTextColor(steppersView.getLabelActiveTextColor());
-            holder.textViewLabel.setTypeface(holder.textViewLabel.getTypeface(), Typeface.BOLD);
-            holder.textViewSubLabel.setTextColor(steppersView.getSubLabelActiveTextColor());
-        } else if (holder.isChecked()) {
-            holder.roundedView.setCircleColor(steppersView.getCircleDoneColor());
-            holder.textViewLabel.setTextColor(steppersView.getLabelDoneTextColor());
-            holder.textViewLabel.setTypeface(holder.textViewLabel.getTypeface(), Typeface.NORMAL);
-            holder.textViewSubLabel.setTextColor(steppersView.getSubLabelDoneTextColor());
+    public SteppersViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        final SteppersViewHolder holder;
+        if (viewType == VIEW_TYPE_SUMMARY) {
+            View row = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_steppers_summary, parent, false);
+            holder = new SteppersViewHolder(row, (TextView) row.findViewById(R.id.textViewSummary));
+        } else if (viewType == VIEW_TYPE_FLAT) {
+            holder = new SteppersViewHolder(new StepRowView(parent.getContext()));
         } else {
-            holder.roundedView.setCircleColor(steppersView.getCircleInactiveColor());
-            holder.textViewLabel.setTextColor(steppersView.getLabelInactiveTextColor());
-            holder.textViewLabel.setTypeface(holder.textViewLabel.getTypeface(), Typeface.NORMAL);
-            holder.textViewSubLabel.setTextColor(steppersView.getSubLabelInactiveTextColor());
+            int layout = viewType == VIEW_TYPE_RAIL ? R.layout.item_steppers_rail : R.layout.item_steppers;
+            View row = layout == preInflatedLayout ? preInflatedRows.poll() : null;
+            if (row == null) {
+                row = LayoutInflater.from(parent.getContext()).inflate(layout, parent, false);
+            }
+            holder = new SteppersViewHolder(row);
         }
-        if (position < currentStep && steppersView.isBackByTap()) {
-            holder.itemView.setOnClickListener(new View.OnClickListener() {
+        // rows may be bound by another adapter sharing the view pool, so the click goes to the binding one
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (holder.owner != null) {
+                    holder.owner.onRowClicked(holder.getAdapterPosition());
+                }
+            }
+        });
+        return holder;
+    }
+
+    private void onRowClicked(int position) {
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        if (isSummary(position)) {
+            if (position == 0 && firstRowStep > 0) {
+                doneStepsExpanded = true;
+            } else {
+                nextStepsExpanded = true;
+            }
+            updateRows();
+            return;
+        }
+        int step = getStep(position);
+        if (step < getCurrentStep() && stateEngine.isCompleted(step) && steppersView.isBackByTap()) {
+            setStep(step, StepTransitionCause.TAP);
+        }
+    }
+
+    /**
+     * Inflates up to the given number of rows on a background thread, to be used by
+     * {@link #onCreateViewHolder(ViewGroup, int)} instead of inflating them during the first layout.
+     */
+    void preInflateRows(RecyclerView parent, int count) {
+        preInflateCount = count;
+        if (steppersView.isFlatRows()) {
+            return;
+        }
+        if (preInflatedLayout != getRowLayout()) {
+            preInflatedRows.clear();
+            preInflatedLayout = getRowLayout();
+        }
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(parent.getContext());
+        for (int i = preInflatedRows.size(); i < count; i++) {
+            inflater.inflate(preInflatedLayout, parent, new AsyncLayoutInflater.OnInflateFinishedListener() {
                 @Override
-                public void onClick(View v) {
-                    setStep(holder.getAdapterPosition());
+                public void onInflateFinished(View view, int resid, ViewGroup parent) {
+                    if (resid == preInflatedLayout && preInflatedRows.size() < preInflateCount) {
+                        preInflatedRows.add(view);
+                    }
                 }
             });
-        } else {
-            holder.itemView.setOnClickListener(null);
         }
+    }
 
-        if (holder.getAdapterPosition() == 0) {
-            holder.viewLineAbove.setVisibility(View.INVISIBLE);
+    @Override
+    public void onBindViewHolder(SteppersViewHolder holder, int position) {
+        holder.owner = this;
+        holder.setTextLayoutCache(textLayoutCache);
+        if (holder.isSummary()) {
+            bindSummary(holder, position);
+            return;
+        }
+        int step = getStep(position);
+        restoreStepState(step);
+        bindState(holder, step, false);
+        holder.setLabel(step, adapter.getLabel(step), adapter.getSubLabel(step));
+        holder.setTextSizes(steppersView.getLabelTextSize(), steppersView.getSubLabelTextSize());
+
+        if (steppersView.isFlatRows()) {
+            prefetchTextLayouts(step);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(SteppersViewHolder holder, int position, List<Object> payloads) {
+        long start = metrics.begin(StepperMetrics.TRACE_BIND_ROW);
+        try {
+            bindRow(holder, position, payloads);
+        } finally {
+            metrics.endRowBound(position, start);
+        }
+    }
+
+    private void bindRow(SteppersViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || holder.isSummary()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        int step = getStep(position);
+        restoreStepState(step);
+        boolean state = false;
+        boolean label = false;
+        boolean subLabel = false;
+        boolean style = false;
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (payload == Payload.STATE) {
+                state = true;
+            } else if (payload == Payload.LABEL) {
+                label = true;
+            } else if (payload == Payload.SUB_LABEL) {
+                subLabel = true;
+            } else if (payload == Payload.STYLE) {
+                style = true;
+            } else {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+        if (state) {
+            bindState(holder, step, true);
+        } else if (style) {
+            bindColors(holder, step);
+        }
+        if (style) {
+            holder.setTextSizes(steppersView.getLabelTextSize(), steppersView.getSubLabelTextSize());
+        }
+        // the holder skips setting text which did not change
+        if (label) {
+            holder.setLabel(step, adapter.getLabel(step), adapter.getSubLabel(step));
+        } else if (subLabel) {
+            holder.setSubLabel(step, adapter.getSubLabel(step));
+        }
+    }
+
+    private void bindState(SteppersViewHolder holder, int step, boolean animate) {
+        StepStatus status = stateEngine.getStatus(step);
+        holder.setChecked(status == StepStatus.DONE);
+        if (status == StepStatus.DONE) {
+            holder.setCircleChecked();
+        } else if (status == StepStatus.ERROR) {
+            holder.setCircleError();
         } else {
-            holder.viewLineAbove.setVisibility(View.VISIBLE);
+            holder.setCircleText(step);
         }
+        holder.setCirclePending(validation.isPending(getStepId(step)));
+        bindColors(holder, step);
+        holder.itemView.setClickable(stateEngine.isCompleted(step) && steppersView.isBackByTap());
+        holder.setLinesVisible(step != 0, step != adapter.getStepCount() - 1);
+
+        holder.setContentVisible(stateEngine.isActive(step), animate ? getRevealDuration() : 0);
+        holder.setContentContainerId(getContentContainerId(step));
+        holder.setContentHeight(stateEngine.isActive(step) && steppersView.getPinnedContentHost() != null
+                ? steppersView.getPinnedContentHeight() : ViewGroup.LayoutParams.WRAP_CONTENT);
+        if (stateEngine.isActive(step)) {
+            activeHolder = holder;
+            fragmentScheduler.schedule(step);
+        } else if (activeHolder == holder) {
+            activeHolder = null;
+        }
+    }
+
+    /**
+     * Content is revealed along with the move animation of the rows below it.
+     */
+    private long getRevealDuration() {
+        RecyclerView.ItemAnimator itemAnimator = recyclerView != null ? recyclerView.getItemAnimator() : null;
+        return itemAnimator != null ? itemAnimator.getMoveDuration() : 0;
+    }
+
+    private void bindSummary(SteppersViewHolder holder, int position) {
+        boolean done = position == 0 && firstRowStep > 0;
+        int count = done ? firstRowStep : adapter.getStepCount() - 1 - lastRowStep;
+        holder.setSummary(steppersView.getResources().getQuantityString(
+                done ? R.plurals.steppers_done_steps : R.plurals.steppers_next_steps, count, count),
+                done ? steppersView.getSubLabelDoneTextColor() : steppersView.getSubLabelInactiveTextColor(),
+                steppersView.getSubLabelTextSize());
+        if (activeHolder == holder) {
+            activeHolder = null;
+        }
+    }
 
-        if (position == getItemCount() - 1) {
-            holder.viewLineBottom.setVisibility(View.INVISIBLE);
+    private void bindColors(SteppersViewHolder holder, int step) {
+        StepStatus status = stateEngine.getStatus(step);
+        if (status == StepStatus.ERROR) {
+            boolean active = stateEngine.isActive(step);
+            holder.setCircleColor(steppersView.getCircleErrorColor());
+            holder.setLabelStyle(active ? steppersView.getLabelActiveTextColor() : steppersView.getLabelInactiveTextColor(), active);
+            holder.setSubLabelColor(active ? steppersView.getSubLabelActiveTextColor() : steppersView.getSubLabelInactiveTextColor());
+        } else if (status == StepStatus.ACTIVE) {
+            holder.setCircleColor(steppersView.getCircleActiveColor());
+            holder.setLabelStyle(steppersView.getLabelActiveTextColor(), true);
+            holder.setSubLabelColor(steppersView.getSubLabelActiveTextColor());
+        } else if (status != StepStatus.INACTIVE) {
+            holder.setCircleColor(steppersView.getCircleDoneColor());
+            holder.setLabelStyle(steppersView.getLabelDoneTextColor(), false);
+            holder.setSubLabelColor(steppersView.getSubLabelDoneTextColor());
         } else {
-            holder.viewLineBottom.setVisibility(View.VISIBLE);
+            holder.setCircleColor(steppersView.getCircleInactiveColor());
+            holder.setLabelStyle(steppersView.getLabelInactiveTextColor(), false);
+            holder.setSubLabelColor(steppersView.getSubLabelInactiveTextColor());
         }
+    }
 
-        holder.textViewLabel.setText(adapter.getLabel(position));
-        holder.textViewSubLabel.setText(adapter.getSubLabel(position));
-        holder.textViewLabel.setTextSize(TypedValue.COMPLEX_UNIT_PX, steppersView.getLabelTextSize());
-        holder.textViewSubLabel.setTextSize(TypedValue.COMPLEX_UNIT_PX, steppersView.getSubLabelTextSize());
+    /**
+     * Queues background measuring of label layouts for steps around the bound one
+     * which were not queued before, plus the bold label of the step after the current one.
+     */
+    private void prefetchTextLayouts(int boundStep) {
+        int from = Math.max(firstRowStep, boundStep - TEXT_PREFETCH_DISTANCE);
+        int to = Math.min(lastRowStep, boundStep + TEXT_PREFETCH_DISTANCE);
+        for (int step = from; step <= to; step++) {
+            if (step != boundStep && (step < textPrefetchedFrom || step > textPrefetchedTo)) {
+                prefetchTextLayouts(step, stateEngine.isActive(step));
+            }
+        }
+        textPrefetchedFrom = from;
+        textPrefetchedTo = to;
+        int currentStep = getCurrentStep();
+        if (boundStep == currentStep && isValidStep(currentStep + 1)) {
+            prefetchTextLayouts(currentStep + 1, true);
+        }
+    }
 
-        holder.frameLayout.setVisibility(position == currentStep ? View.VISIBLE : View.GONE);
+    private void prefetchTextLayouts(int step, boolean active) {
+        textLayoutCache.prefetch(step, StepTextLayoutCache.LABEL, adapter.getLabel(step),
+                steppersView.getLabelTextSize(), active);
+        textLayoutCache.prefetch(step, StepTextLayoutCache.SUB_LABEL, adapter.getSubLabel(step),
+                steppersView.getSubLabelTextSize(), false);
+    }
+
+    /**
+     * Keeps the current step on its id when steps of a {@link StableStepperAdapter}
+     * are inserted, removed or moved, and renumbers the rows which changed position.
+     */
+    private void onStepsChanged(int fromPosition) {
+        stepPositions = null;
+        if (applyingSteps) {
+            return;
+        }
+        textPrefetchedFrom = 0;
+        textPrefetchedTo = -1;
+        stateEngine.setStepCount(adapter.getStepCount());
+        BitSet activated = null;
+        if (adapter instanceof StableStepperAdapter) {
+            int position = currentStepId != RecyclerView.NO_ID
+                    ? getStepPosition(currentStepId) : RecyclerView.NO_POSITION;
+            if (position != RecyclerView.NO_POSITION) {
+                activated = stateEngine.setActive(position);
+            }
+        }
+        updateCurrentStepId();
+        steppersView.onStepChanged(getCurrentStep(), StepTransitionCause.STEPS_CHANGED);
+        updateRowRange();
+        if (activated != null) {
+            notifyStepsChanged(activated);
+        }
+        if (fromPosition != RecyclerView.NO_POSITION) {
+            // rows after the change are renumbered, the row before it may have become the last one
+            int start = Math.max(0, fromPosition - 1);
+            if (start < getItemCount()) {
+                notifyRowsStateChanged(start, getItemCount() - start);
+            }
+        }
+        fragmentScheduler.schedule(RecyclerView.NO_POSITION);
     }
 
     @Override
     public void onViewAttachedToWindow(SteppersViewHolder holder) {
         super.onViewAttachedToWindow(holder);
-        initFragment(holder, holder.getAdapterPosition());
+        fragmentScheduler.schedule(getStep(holder.getAdapterPosition()));
+    }
+
+    @Override
+    public void onViewRecycled(SteppersViewHolder holder) {
+        super.onViewRecycled(holder);
+        if (activeHolder == holder) {
+            activeHolder = null;
+        }
+        // recycled rows may go to a pool shared with other steppers, which must not get
+        // fragment views of this one; the scheduler detaches or removes their fragments
+        metrics.onContentRecycled(holder.frameLayout);
+        holder.releaseContent();
+        holder.owner = null;
+        fragmentScheduler.schedule(RecyclerView.NO_POSITION);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        this.recyclerView = null;
+        preInflateCount = 0;
+        preInflatedRows.clear();
     }
 
     @Override
     public long getItemId(int position) {
-        return position;
+        if (isSummary(position)) {
+            return position == 0 && firstRowStep > 0 ? HEAD_SUMMARY_ID : TAIL_SUMMARY_ID;
+        }
+        return getStepId(getStep(position));
     }
 
     @Override
     public int getItemCount() {
+        if (!isCollapsing()) {
+            return adapter.getStepCount();
+        }
+        return getHeadRowCount() + lastRowStep - firstRowStep + 1
+                + (lastRowStep < adapter.getStepCount() - 1 ? 1 : 0);
+    }
+
+    int getStepCount() {
         return adapter.getStepCount();
     }
 
-    private void initFragment(SteppersViewHolder holder, int position) {
-        FragmentTransaction ft = fragmentManager.beginTransaction();
-        String name = makeFragmentName(steppersView.getId(), position);
-        Fragment fragment = fragmentManager.findFragmentByTag(name);
-        if (position != currentStep && fragment != null) {
-            ft.remove(fragment);
-        } else if (position == currentStep) {
-            ft.replace(holder.frameLayout.getId(), adapter.getFragment(position), name);
+    private boolean isCollapsing() {
+        return collapseDoneSteps || collapseNextSteps;
+    }
+
+    private int getHeadRowCount() {
+        return firstRowStep > 0 ? 1 : 0;
+    }
+
+    private boolean isSummary(int position) {
+        return isCollapsing() && (position == 0 && firstRowStep > 0
+                || position == getHeadRowCount() + lastRowStep - firstRowStep + 1);
+    }
+
+    /**
+     * @return step shown by the row at the given position, {@link RecyclerView#NO_POSITION} for summary rows
+     */
+    /**
+     * @return first step with a row laid out in the list, {@link RecyclerView#NO_POSITION} if there is none
+     */
+    int getFirstVisibleStep() {
+        int first = RecyclerView.NO_POSITION;
+        for (int i = 0; recyclerView != null && i < recyclerView.getChildCount(); i++) {
+            int step = getStep(recyclerView.getChildAdapterPosition(recyclerView.getChildAt(i)));
+            if (step != RecyclerView.NO_POSITION && (first == RecyclerView.NO_POSITION || step < first)) {
+                first = step;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return last step with a row laid out in the list, {@link RecyclerView#NO_POSITION} if there is none
+     */
+    int getLastVisibleStep() {
+        int last = RecyclerView.NO_POSITION;
+        for (int i = 0; recyclerView != null && i < recyclerView.getChildCount(); i++) {
+            last = Math.max(last, getStep(recyclerView.getChildAdapterPosition(recyclerView.getChildAt(i))));
+        }
+        return last;
+    }
+
+    private int getStep(int position) {
+        if (!isCollapsing() || position == RecyclerView.NO_POSITION) {
+            return position;
+        }
+        return isSummary(position) ? RecyclerView.NO_POSITION : position - getHeadRowCount() + firstRowStep;
+    }
+
+    /**
+     * @return position of the row showing the given step, {@link RecyclerView#NO_POSITION} if it is collapsed
+     */
+    private int getPosition(int step) {
+        if (!isCollapsing()) {
+            return step;
+        }
+        return step < firstRowStep || step > lastRowStep ? RecyclerView.NO_POSITION : step - firstRowStep + getHeadRowCount();
+    }
+
+    /**
+     * Folds done steps before the current one and/or steps far after it into summary rows,
+     * unless the summary was expanded.
+     */
+    private void updateRowRange() {
+        int count = adapter != null ? adapter.getStepCount() : 0;
+        int currentStep = getCurrentStep();
+        firstRowStep = 0;
+        lastRowStep = count - 1;
+        if (collapseDoneSteps && !doneStepsExpanded && currentStep - VISIBLE_DONE_STEPS >= MIN_COLLAPSED_STEPS) {
+            firstRowStep = currentStep - VISIBLE_DONE_STEPS;
+        }
+        if (collapseNextSteps && !nextStepsExpanded && count - 1 - currentStep - VISIBLE_NEXT_STEPS >= MIN_COLLAPSED_STEPS) {
+            lastRowStep = currentStep + VISIBLE_NEXT_STEPS;
+        }
+    }
+
+    /**
+     * Updates the folded ranges and notifies only the rows which were folded, unfolded or moved
+     * between step rows and summaries, so rows which stay are not rebound.
+     */
+    private void updateRows() {
+        int oldFirst = firstRowStep;
+        int oldLast = lastRowStep;
+        boolean oldHead = oldFirst > 0;
+        boolean oldTail = oldLast < adapter.getStepCount() - 1;
+        updateRowRange();
+        if (oldFirst == firstRowStep && oldLast == lastRowStep) {
+            return;
+        }
+        boolean head = firstRowStep > 0;
+        boolean tail = lastRowStep < adapter.getStepCount() - 1;
+        applyingSteps = true;
+        try {
+            if (oldHead && !head) {
+                notifyItemRemoved(0);
+            } else if (!oldHead && head) {
+                notifyItemInserted(0);
+            }
+            int offset = head ? 1 : 0;
+            int first = oldFirst;
+            int last = oldLast;
+            if (firstRowStep > first) {
+                int end = Math.min(firstRowStep, last + 1);
+                notifyItemRangeRemoved(offset, end - first);
+                first = end;
+            }
+            if (first <= last && lastRowStep < last) {
+                int start = Math.max(lastRowStep + 1, first);
+                notifyItemRangeRemoved(offset + start - first, last - start + 1);
+                last = start - 1;
+            }
+            if (first > last) {
+                notifyItemRangeInserted(offset, lastRowStep - firstRowStep + 1);
+            } else {
+                if (firstRowStep < first) {
+                    notifyItemRangeInserted(offset, first - firstRowStep);
+                }
+                if (lastRowStep > last) {
+                    notifyItemRangeInserted(offset + last + 1 - firstRowStep, lastRowStep - last);
+                }
+            }
+            int tailPosition = offset + lastRowStep - firstRowStep + 1;
+            if (oldTail && !tail) {
+                notifyItemRemoved(tailPosition);
+            } else if (!oldTail && tail) {
+                notifyItemInserted(tailPosition);
+            }
+        } finally {
+            applyingSteps = false;
+        }
+        stepPositions = null;
+    }
+
+    private void notifySummariesChanged() {
+        if (firstRowStep > 0) {
+            notifyItemChanged(0, Payload.STATE);
+        }
+        if (lastRowStep < adapter.getStepCount() - 1) {
+            notifyItemChanged(getItemCount() - 1, Payload.STATE);
+        }
+    }
+
+    /**
+     * Notifies rows of the given steps which are not collapsed.
+     */
+    private void notifyStepRangeChanged(int fromStep, int count, Object payload) {
+        int from = Math.max(fromStep, isCollapsing() ? firstRowStep : 0);
+        int to = Math.min(fromStep + count - 1, isCollapsing() ? lastRowStep : adapter.getStepCount() - 1);
+        if (from <= to && payload == Payload.STATE) {
+            notifyRowsStateChanged(getPosition(from), to - from + 1);
+        } else if (from <= to) {
+            notifyItemRangeChanged(getPosition(from), to - from + 1, payload);
+        }
+    }
+
+    /**
+     * Labels are not read again on state changes, unless sub labels follow the state.
+     */
+    private void notifyRowsStateChanged(int position, int count) {
+        notifyItemRangeChanged(position, count, Payload.STATE);
+        if (steppersView.isSubLabelFollowsState()) {
+            notifyItemRangeChanged(position, count, Payload.SUB_LABEL);
+        }
+    }
+
+    void setCollapsedSteps(boolean done, boolean next) {
+        collapseDoneSteps = done;
+        collapseNextSteps = next;
+        doneStepsExpanded = false;
+        nextStepsExpanded = false;
+        if (adapter != null) {
+            updateRowRange();
+            notifyDataSetChanged();
+        }
+    }
+
+    void notifyStepsInserted(int step, int count) {
+        stateEngine.insertSteps(step, count);
+        if (isCollapsing()) {
+            notifyDataSetChanged();
+        } else {
+            notifyItemRangeInserted(step, count);
+        }
+    }
+
+    void notifyStepsRemoved(int step, int count) {
+        stateEngine.removeSteps(step, count);
+        if (isCollapsing()) {
+            notifyDataSetChanged();
+        } else {
+            notifyItemRangeRemoved(step, count);
+        }
+    }
+
+    void notifyStepMoved(int fromStep, int toStep) {
+        stateEngine.moveStep(fromStep, toStep);
+        if (isCollapsing()) {
+            notifyDataSetChanged();
+        } else {
+            notifyItemMoved(fromStep, toStep);
+        }
+    }
+
+    /**
+     * @return content container of the row bound as the current step, if it is attached
+     */
+    /**
+     * The content of the current step is attached, its row can reveal it.
+     */
+    void revealActiveContent() {
+        if (activeHolder != null) {
+            activeHolder.startReveal();
+        }
+    }
+
+    ViewGroup getActiveContentContainer() {
+        ViewGroup pinnedContentHost = steppersView.getPinnedContentHost();
+        return pinnedContentHost != null ? pinnedContentHost : getActiveRowContainer();
+    }
+
+    /**
+     * @return content container of the current step's row, if it is attached and up to date
+     */
+    ViewGroup getActiveRowContainer() {
+        if (activeHolder != null && activeHolder.frameLayout != null
+                && activeHolder.getAdapterPosition() == getPosition(getCurrentStep())
+                && ViewCompat.isAttachedToWindow(activeHolder.itemView)) {
+            return activeHolder.frameLayout;
+        }
+        return null;
+    }
+
+    /**
+     * @return content container of the attached, up to date row of a step which is not current
+     */
+    ViewGroup getPrefetchContentContainer(int step) {
+        if (steppersView.getPinnedContentHost() != null) {
+            return null;
         }
-        ft.commitAllowingStateLoss();
-        fragmentManager.executePendingTransactions();
+        int position = getPosition(step);
+        SteppersViewHolder holder = recyclerView != null && position != RecyclerView.NO_POSITION
+                ? (SteppersViewHolder) recyclerView.findViewHolderForAdapterPosition(position) : null;
+        if (holder != null && holder != activeHolder && holder.getLayoutPosition() == position
+                && ViewCompat.isAttachedToWindow(holder.itemView)) {
+            return holder.prepareContentContainer(getContentContainerId(step));
+        }
+        return null;
+    }
+
+    /**
+     * Content containers get an id per step, so a retained fragment can be attached again
+     * to whichever row shows its step.
+     */
+    private int getContentContainerId(int step) {
+        long stepId = getStepId(step);
+        Integer id = contentContainerIds.get(stepId);
+        if (id == null) {
+            id = ViewIdGenerator.generateViewId();
+            contentContainerIds.put(stepId, id);
+        }
+        return id;
+    }
+
+    long getStepId(int step) {
+        return adapter instanceof StableStepperAdapter ? ((StableStepperAdapter) adapter).getStepId(step) : step;
+    }
+
+    /**
+     * @return position of the step with the given id or {@link RecyclerView#NO_POSITION} if there is none
+     */
+    int getStepPosition(long stepId) {
+        if (!(adapter instanceof StableStepperAdapter)) {
+            return stepId >= 0 && stepId < adapter.getStepCount() ? (int) stepId : RecyclerView.NO_POSITION;
+        }
+        if (stepPositions == null) {
+            int count = adapter.getStepCount();
+            stepPositions = new LongSparseArray<>(count);
+            for (int i = 0; i < count; i++) {
+                stepPositions.put(getStepId(i), i);
+            }
+        }
+        Integer position = stepPositions.get(stepId);
+        return position != null ? position : RecyclerView.NO_POSITION;
+    }
+
+    Fragment createFragment(int step) {
+        return adapter.getFragment(step);
+    }
+
+    String getFragmentTag(long stepId) {
+        return makeFragmentName(steppersView.getId(), stepId);
+    }
+
+    void cancelPendingFragmentChanges() {
+        fragmentScheduler.cancel();
+    }
+
+    void setRetainedStepCount(int retainedStepCount) {
+        fragmentScheduler.setRetainedStepCount(retainedStepCount);
+    }
+
+    void releaseRetainedFragments() {
+        fragmentScheduler.releaseRetained();
+    }
+
+    StepperMetrics getMetrics() {
+        return metrics;
+    }
+
+    void setMetricsListener(StepperMetricsListener listener) {
+        metrics.setListener(listener);
+    }
+
+    void setSavedStateCacheSize(int size) {
+        fragmentScheduler.setSavedStateCacheSize(size);
+    }
+
+    void setPrefetch(boolean next, boolean previous) {
+        fragmentScheduler.setPrefetch(next, previous);
     }
 
     public Fragment getStepFragment(int step) {
-        String name = makeFragmentName(steppersView.getId(), step);
-        return fragmentManager.findFragmentByTag(name);
+        return isValidStep(step) ? fragmentManager.findFragmentByTag(getFragmentTag(getStepId(step))) : null;
     }
 
     public int getCurrentStep() {
-        return currentStep;
+        return stateEngine.getActiveStep();
+    }
+
+    StepStatus getStepStatus(int step) {
+        return stateEngine.getStatus(step);
+    }
+
+    void setStepDone(int step, boolean done) {
+        if (isValidStep(step)) {
+            notifyStepsChanged(stateEngine.setDone(step, done));
+        }
+    }
+
+    void setStepSkipped(int step, boolean skipped) {
+        if (isValidStep(step)) {
+            notifyStepsChanged(stateEngine.setSkipped(step, skipped));
+        }
+    }
+
+    void setStepError(int step, boolean error) {
+        if (isValidStep(step)) {
+            notifyStepsChanged(stateEngine.setError(step, error));
+        }
+    }
+
+    long getCurrentStepId() {
+        return currentStepId;
     }
 
     public void setStep(int step) {
-        if (isValidStep(currentStep) && step != currentStep) {
-            int len = Math.abs(step - currentStep) + 1;
-            int start = Math.min(step, currentStep);
-            currentStep = step;
-            notifyItemRangeChanged(start, len);
+        setStep(step, StepTransitionCause.SET);
+    }
+
+    private void setStep(int step, StepTransitionCause cause) {
+        int currentStep = getCurrentStep();
+        if (isValidStep(currentStep) && isValidStep(step) && step != currentStep) {
+            metrics.startTransition(currentStep, step);
+            moveTo(step, cause);
+        }
+    }
+
+    /**
+     * Saves the done, skipped and error statuses of all steps, and with a {@link StableStepperAdapter}
+     * the step ids they belong to, if they fit in the budget. Step states get the rest of it.
+     */
+    void saveState(SteppersView.SavedState state, int budget) {
+        int count = adapter != null ? adapter.getStepCount() : 0;
+        int words = (count + 63) / 64;
+        if (words * 3 * 8 <= budget) {
+            long[] doneSteps = new long[words];
+            long[] skippedSteps = new long[words];
+            long[] errorSteps = new long[words];
+            for (int i = 0; i < count; i++) {
+                if (stateEngine.isDone(i)) {
+                    doneSteps[i >> 6] |= 1L << i;
+                }
+                if (stateEngine.isSkipped(i)) {
+                    skippedSteps[i >> 6] |= 1L << i;
+                }
+                if (stateEngine.isError(i)) {
+                    errorSteps[i >> 6] |= 1L << i;
+                }
+            }
+            state.doneSteps = doneSteps;
+            state.skippedSteps = skippedSteps;
+            state.errorSteps = errorSteps;
+            budget -= words * 3 * 8;
+            if (adapter instanceof StableStepperAdapter && count * 8 <= budget) {
+                long[] stepIds = new long[count];
+                for (int i = 0; i < count; i++) {
+                    stepIds[i] = getStepId(i);
+                }
+                state.stepIds = stepIds;
+                budget -= count * 8;
+            }
+        }
+        if (adapter instanceof StatefulStepperAdapter) {
+            state.stepStates = saveStepStates((StatefulStepperAdapter) adapter, count, budget);
+        }
+    }
+
+    /**
+     * Saves states of the steps nearest to the current one first, leaving out those which
+     * do not fit in the budget. Stops once not even an empty state would fit.
+     */
+    private LongSparseArray<Bundle> saveStepStates(StatefulStepperAdapter statefulAdapter, int count, int budget) {
+        LongSparseArray<Bundle> states = new LongSparseArray<>();
+        int currentStep = getCurrentStep();
+        int minSize = StepStateCache.measure(new Bundle()) + 8;
+        for (int distance = 0; distance < count && budget >= minSize; distance++) {
+            for (int step = currentStep - distance; step <= currentStep + distance && budget >= minSize;
+                    step += Math.max(1, distance * 2)) {
+                if (step < 0 || step >= count) {
+                    continue;
+                }
+                long stepId = getStepId(step);
+                // states which were not restored yet are still pending, the adapter does not have them
+                Bundle state = pendingStepStates != null ? pendingStepStates.get(stepId) : null;
+                if (state == null) {
+                    state = statefulAdapter.saveStepState(step);
+                }
+                if (state == null) {
+                    continue;
+                }
+                int size = StepStateCache.measure(state) + 8;
+                if (size <= budget) {
+                    states.put(stepId, state);
+                    budget -= size;
+                }
+            }
+        }
+        return states.size() > 0 ? states : null;
+    }
+
+    /**
+     * Restores the current step and the statuses of all steps as they were saved, by id if the adapter
+     * has stable ids. States of the steps are restored when they are bound. If there are no steps yet,
+     * it happens when the adapter is set.
+     */
+    void restoreState(SteppersView.SavedState state) {
+        if (adapter == null || adapter.getStepCount() == 0) {
+            pendingState = state;
+            return;
+        }
+        pendingState = null;
+        pendingStepStates = adapter instanceof StatefulStepperAdapter ? state.stepStates : null;
+        int step = getRestoredStep(state);
+        if (state.doneSteps == null) {
+            // statuses did not fit in the budget, the steps before the current one are done
+            setStep(step, StepTransitionCause.RESTORE);
+            return;
+        }
+        // steps may have been completed out of order, skipped or failed
+        stateEngine.clearStatuses();
+        if (isValidStep(step) && step != getCurrentStep()) {
+            moveTo(step, StepTransitionCause.RESTORE, false);
+        }
+        int count = state.stepIds != null ? state.stepIds.length : adapter.getStepCount();
+        for (int i = 0; i < count; i++) {
+            int position = state.stepIds != null ? getStepPosition(state.stepIds[i]) : i;
+            if (isValidStep(position)) {
+                stateEngine.setDone(position, state.isStepDone(i));
+                stateEngine.setSkipped(position, state.isStepSkipped(i));
+                stateEngine.setError(position, state.isStepError(i));
+            }
+        }
+        notifyStateChanged();
+    }
+
+    private int getRestoredStep(SteppersView.SavedState state) {
+        int position = getStepPosition(state.currentStepId);
+        if (position != RecyclerView.NO_POSITION) {
+            return position;
+        }
+        if (state.stepIds != null) {
+            // the current step was removed, continue from the first remaining step which was not done
+            for (int i = 0; i < state.stepIds.length; i++) {
+                position = getStepPosition(state.stepIds[i]);
+                if (position != RecyclerView.NO_POSITION && !state.isStepDone(i)) {
+                    return position;
+                }
+            }
         }
+        return Math.max(0, Math.min(state.currentStep, adapter.getStepCount() - 1));
     }
 
+    private void restoreStepState(int step) {
+        if (pendingStepStates == null) {
+            return;
+        }
+        long stepId = getStepId(step);
+        Bundle state = pendingStepStates.get(stepId);
+        if (state != null) {
+            pendingStepStates.remove(stepId);
+            ((StatefulStepperAdapter) adapter).restoreStepState(step, state);
+        }
+        if (pendingStepStates.size() == 0) {
+            pendingStepStates = null;
+        }
+    }
+
+    /**
+     * Advances if the current step is valid. Without a cached result the step is validated
+     * in the background first, showing it as pending.
+     */
     public void nextStep() {
-        if (isValidStep(currentStep + 1)) {
-            currentStep++;
-            notifyItemRangeChanged(currentStep - 1, 2);
+        int step = getCurrentStep();
+        if (!isValidStep(step + 1)) {
+            return;
+        }
+        metrics.startTransition(step, step + 1);
+        long stepId = getStepId(step);
+        Boolean valid = validation.getResult(stepId);
+        if (valid == null) {
+            validation.validate(step, stepId);
+            notifyStepRangeChanged(step, 1, Payload.STATE);
+        } else if (valid) {
+            moveTo(step + 1, StepTransitionCause.NEXT);
+        } else {
+            metrics.cancelTransition();
+            notifyStepsChanged(stateEngine.setError(step, true));
+            steppersView.onValidationFailed(step, null);
+        }
+    }
+
+    private void onStepValidated(long stepId, boolean valid) {
+        int step = getStepPosition(stepId);
+        if (step == RecyclerView.NO_POSITION) {
+            return;
+        }
+        stateEngine.setError(step, !valid);
+        // the pending circle is cleared too
+        notifyStepRangeChanged(step, 1, Payload.STATE);
+        if (valid && step == getCurrentStep() && isValidStep(step + 1)) {
+            moveTo(step + 1, StepTransitionCause.NEXT);
+        } else if (step == getCurrentStep()) {
+            metrics.cancelTransition();
+        }
+        if (!valid) {
+            steppersView.onValidationFailed(step, null);
+        }
+    }
+
+    private void onValidationError(long stepId, Throwable error) {
+        int step = getStepPosition(stepId);
+        if (step == RecyclerView.NO_POSITION) {
+            return;
+        }
+        stateEngine.setError(step, true);
+        notifyStepRangeChanged(step, 1, Payload.STATE);
+        if (step == getCurrentStep()) {
+            metrics.cancelTransition();
+        }
+        steppersView.onValidationFailed(step, error);
+    }
+
+    void setStepValidator(StepValidator validator) {
+        long cancelledStepId = validation.cancel();
+        if (cancelledStepId != RecyclerView.NO_ID) {
+            metrics.cancelTransition();
+        }
+        notifyStepChanged(cancelledStepId);
+        validation.setValidator(validator);
+    }
+
+    void invalidateStepValidation(int step) {
+        if (isValidStep(step)) {
+            validation.invalidate(step, getStepId(step));
+        }
+    }
+
+    private void notifyStepChanged(long stepId) {
+        int step = stepId != RecyclerView.NO_ID ? getStepPosition(stepId) : RecyclerView.NO_POSITION;
+        if (step != RecyclerView.NO_POSITION) {
+            notifyStepRangeChanged(step, 1, Payload.STATE);
         }
     }
 
     public void prevStep() {
-        if (isValidStep(currentStep - 1)) {
-            this.currentStep--;
-            notifyItemRangeChanged(currentStep, 2);
+        if (isValidStep(getCurrentStep() - 1)) {
+            metrics.startTransition(getCurrentStep(), getCurrentStep() - 1);
+            moveTo(getCurrentStep() - 1, StepTransitionCause.PREVIOUS);
         }
     }
 
-    private boolean isValidStep(int step) {
+    private void moveTo(int step, StepTransitionCause cause) {
+        moveTo(step, cause, true);
+    }
+
+    /**
+     * @param linear whether moving forward completes the steps passed and moving back reopens them
+     */
+    private void moveTo(int step, StepTransitionCause cause, boolean linear) {
+        // navigating elsewhere cancels a running validation
+        notifyStepChanged(validation.cancel());
+        fragmentScheduler.schedule(getCurrentStep());
+        metrics.onStepChanged(getCurrentStep(), step);
+        BitSet changed = linear ? stateEngine.moveTo(step) : stateEngine.setActive(step);
+        updateCurrentStepId();
+        steppersView.onStepChanged(step, cause);
+        if (isCollapsing()) {
+            doneStepsExpanded = false;
+            nextStepsExpanded = false;
+            updateRows();
+            notifySummariesChanged();
+        }
+        notifyStepsChanged(changed);
+    }
+
+    /**
+     * Rebinds the state of the given steps, as ranges of consecutive steps.
+     */
+    private void notifyStepsChanged(BitSet steps) {
+        for (int from = steps.nextSetBit(0); from >= 0; ) {
+            int to = steps.nextClearBit(from);
+            notifyStepRangeChanged(from, to - from, Payload.STATE);
+            from = steps.nextSetBit(to);
+        }
+    }
+
+    private void updateCurrentStepId() {
+        int step = getCurrentStep();
+        currentStepId = isValidStep(step) ? getStepId(step) : RecyclerView.NO_ID;
+    }
+
+    void notifyStateChanged() {
+        notifyRowsStateChanged(0, getItemCount());
+    }
+
+    void notifyStyleChanged() {
+        notifyItemRangeChanged(0, getItemCount(), Payload.STYLE);
+    }
+
+    void notifyLabelsChanged(int fromStep, int count) {
+        notifyStepRangeChanged(fromStep, count, Payload.LABEL);
+    }
+
+    void notifyLabelChanged(int step) {
+        notifyStepRangeChanged(step, 1, Payload.LABEL);
+    }
+
+    boolean isValidStep(int step) {
         return step >= 0 && step < adapter.getStepCount();
     }
 
@@ -173,9 +1132,121 @@ public class InternalSteppersAdapter extends RecyclerView.Adapter<SteppersViewHo
         return "android:steppers:" + viewId + ":" + id;
     }
 
+    /**
+     * Diffs the submitted steps against the current ones on a background thread and dispatches
+     * the changes on the main thread. Submitting again, or setting an adapter, before the diff
+     * is done drops its result.
+     */
+    void submitSteps(List<SteppersItem> steps) {
+        final SteppersItemAdapter newAdapter = new SteppersItemAdapter(steps);
+        if (!(adapter instanceof SteppersItemAdapter)) {
+            setAdapter(newAdapter);
+            return;
+        }
+        final SteppersItemAdapter oldAdapter = (SteppersItemAdapter) adapter;
+        final int generation = ++submitGeneration;
+        SteppersExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = oldAdapter.diff(newAdapter);
+                SteppersExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == submitGeneration && adapter == oldAdapter) {
+                            applySteps(newAdapter, result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applySteps(StepperAdapter newAdapter, DiffUtil.DiffResult result) {
+        adapter = newAdapter;
+        // step statuses follow their steps
+        StepShiftCallback shiftCallback = new StepShiftCallback(stateEngine);
+        result.dispatchUpdatesTo(shiftCallback);
+        if (isCollapsing()) {
+            // the result is in step positions, which are not row positions while steps are collapsed
+            notifyDataSetChanged();
+            return;
+        }
+        applyingSteps = true;
+        try {
+            result.dispatchUpdatesTo(this);
+        } finally {
+            applyingSteps = false;
+        }
+        // changed steps were rebound by the dispatch, only rows after the first insert, removal or move
+        // get new numbers
+        onStepsChanged(shiftCallback.firstChanged);
+    }
+
     public void setAdapter(StepperAdapter adapter) {
+        submitGeneration++;
+        if (this.adapter instanceof PagedStepperAdapter) {
+            ((PagedStepperAdapter) this.adapter).setOwner(null);
+        }
+        if (adapter instanceof PagedStepperAdapter) {
+            ((PagedStepperAdapter) adapter).setOwner(this);
+        }
         this.adapter = adapter;
-        currentStep = 0;
+        stepPositions = null;
+        stateEngine.reset(adapter != null ? adapter.getStepCount() : 0, 0);
+        updateCurrentStepId();
+        steppersView.onStepChanged(0, StepTransitionCause.STEPS_CHANGED);
+        doneStepsExpanded = false;
+        nextStepsExpanded = false;
+        updateRowRange();
+        textLayoutCache.clear();
+        fragmentScheduler.clearSavedStates();
+        validation.clear();
+        pendingStepStates = null;
         notifyDataSetChanged();
+        if (pendingState != null) {
+            restoreState(pendingState);
+        }
+    }
+
+    /**
+     * Shifts step statuses along with a diff and remembers the first position it touched. Steps
+     * before it keep their positions.
+     */
+    private static final class StepShiftCallback implements ListUpdateCallback {
+
+        private final StepStateEngine stateEngine;
+        int firstChanged = RecyclerView.NO_POSITION;
+
+        StepShiftCallback(StepStateEngine stateEngine) {
+            this.stateEngine = stateEngine;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            stateEngine.insertSteps(position, count);
+            onShifted(position);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            stateEngine.removeSteps(position, count);
+            onShifted(position);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            stateEngine.moveStep(fromPosition, toPosition);
+            onShifted(Math.min(fromPosition, toPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+        }
+
+        private void onShifted(int position) {
+            if (firstChanged == RecyclerView.NO_POSITION || position < firstChanged) {
+                firstChanged = position;
+            }
+        }
     }
 }
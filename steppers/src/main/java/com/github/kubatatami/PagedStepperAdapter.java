@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+
+import java.util.concurrent.Executor;
+
+/**
+ * {@link StepperAdapter} for large step counts whose labels are loaded in pages on a background
+ * thread. Rows of steps whose page is not loaded yet show placeholders and are rebound when the
+ * page arrives. When a page is added, only pages near the visible steps and the requested one are
+ * kept, so scrolling back and forth does not load the same pages again.
+ * <p>
+ * Pages are loaded on a thread of their own, or on the given executor, so slow loading does not
+ * delay step validation. {@link #getStepCount()} and {@link #getFragment(int)} are still called
+ * on the main thread.
+ */
+public abstract class PagedStepperAdapter implements StepperAdapter {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_KEPT_PAGES = 5;
+
+    private final int pageSize;
+    private final int keptPages;
+    private final Executor executor;
+    private final SparseArray<Page> pages = new SparseArray<>();
+    private InternalSteppersAdapter owner;
+    private int generation;
+
+    public PagedStepperAdapter() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_KEPT_PAGES);
+    }
+
+    /**
+     * @param pageSize  number of steps loaded at once
+     * @param keptPages number of loaded pages kept before and after the visible steps, together
+     */
+    public PagedStepperAdapter(int pageSize, int keptPages) {
+        this(pageSize, keptPages, SteppersExecutors.paging());
+    }
+
+    /**
+     * @param executor runs {@link #loadSteps(int, int, String[], String[])}
+     */
+    public PagedStepperAdapter(int pageSize, int keptPages, Executor executor) {
+        this.pageSize = pageSize;
+        this.keptPages = Math.max(keptPages, 2);
+        this.executor = executor;
+    }
+
+    /**
+     * Loads labels of {@code count} steps starting at {@code fromStep}. Called on a background thread.
+     */
+    protected abstract void loadSteps(int fromStep, int count, String[] labels, String[] subLabels);
+
+    /**
+     * @return label shown until the page of the step is loaded
+     */
+    protected String getPlaceholderLabel(int step) {
+        return "";
+    }
+
+    /**
+     * @return sub label shown until the page of the step is loaded
+     */
+    protected String getPlaceholderSubLabel(int step) {
+        return "";
+    }
+
+    @Override
+    public final String getLabel(int step) {
+        Page page = requestPage(step);
+        return page.loaded ? page.labels[step - page.fromStep] : getPlaceholderLabel(step);
+    }
+
+    @Override
+    public final String getSubLabel(int step) {
+        Page page = requestPage(step);
+        return page.loaded ? page.subLabels[step - page.fromStep] : getPlaceholderSubLabel(step);
+    }
+
+    /**
+     * Drops all loaded pages and rebinds the steps, for example when the underlying data changed.
+     */
+    public void invalidate() {
+        generation++;
+        pages.clear();
+        if (owner != null) {
+            owner.notifyDataSetChanged();
+        }
+    }
+
+    void setOwner(InternalSteppersAdapter owner) {
+        this.owner = owner;
+    }
+
+    private Page requestPage(int step) {
+        int index = step / pageSize;
+        Page page = getOrLoadPage(index);
+        // load ahead when the step is in the second half of its page, behind when it is in the first
+        int neighbour = step - index * pageSize < pageSize / 2 ? index - 1 : index + 1;
+        if (neighbour >= 0 && neighbour * pageSize < getStepCount()) {
+            getOrLoadPage(neighbour);
+        }
+        return page;
+    }
+
+    private Page getOrLoadPage(int index) {
+        Page page = pages.get(index);
+        if (page == null) {
+            int fromStep = index * pageSize;
+            page = new Page(fromStep, Math.min(pageSize, getStepCount() - fromStep));
+            evictPages(index);
+            pages.put(index, page);
+            load(page);
+        }
+        return page;
+    }
+
+    private void load(final Page page) {
+        final int requestGeneration = generation;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadSteps(page.fromStep, page.labels.length, page.labels, page.subLabels);
+                SteppersExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requestGeneration == generation && pages.get(page.fromStep / pageSize) == page) {
+                            page.loaded = true;
+                            if (owner != null) {
+                                owner.notifyLabelsChanged(page.fromStep, page.labels.length);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void evictPages(int index) {
+        int first = index;
+        int last = index;
+        int firstVisible = owner != null ? owner.getFirstVisibleStep() : RecyclerView.NO_POSITION;
+        if (firstVisible != RecyclerView.NO_POSITION) {
+            first = Math.min(first, firstVisible / pageSize);
+            last = Math.max(last, owner.getLastVisibleStep() / pageSize);
+        }
+        int distance = keptPages / 2;
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            if (pages.keyAt(i) < first - distance || pages.keyAt(i) > last + distance) {
+                pages.removeAt(i);
+            }
+        }
+    }
+
+    private static final class Page {
+
+        final int fromStep;
+        final String[] labels;
+        final String[] subLabels;
+        boolean loaded;
+
+        Page(int fromStep, int count) {
+            this.fromStep = fromStep;
+            this.labels = new String[count];
+            this.subLabels = new String[count];
+        }
+    }
+}
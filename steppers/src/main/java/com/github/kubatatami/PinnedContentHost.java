@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.content.Context;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+
+/**
+ * Hosts the current step's content above the list, with a fixed height, so a scrolling list
+ * inside the content is measured with bounded height and keeps recycling its own rows.
+ * The active row keeps an empty placeholder of the same height, which the host follows
+ * right below the step's header before every frame.
+ */
+class PinnedContentHost extends FrameLayout implements ViewTreeObserver.OnPreDrawListener {
+
+    private final InternalSteppersAdapter adapter;
+    private final View list;
+
+    PinnedContentHost(Context context, InternalSteppersAdapter adapter, View list) {
+        super(context);
+        this.adapter = adapter;
+        this.list = list;
+        setId(ViewIdGenerator.generateViewId());
+        setVisibility(INVISIBLE);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnPreDrawListener(this);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getViewTreeObserver().removeOnPreDrawListener(this);
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        View placeholder = adapter.getActiveRowContainer();
+        if (placeholder == null || placeholder.getVisibility() != VISIBLE) {
+            setVisibility(INVISIBLE);
+            return true;
+        }
+        float x = placeholder.getLeft();
+        float y = placeholder.getTop();
+        ViewParent parent = placeholder.getParent();
+        while (parent instanceof View && parent != list) {
+            View view = (View) parent;
+            x += view.getLeft() + ViewCompat.getTranslationX(view);
+            y += view.getTop() + ViewCompat.getTranslationY(view);
+            parent = view.getParent();
+        }
+        if (parent != list) {
+            setVisibility(INVISIBLE);
+            return true;
+        }
+        ViewGroup.LayoutParams layoutParams = getLayoutParams();
+        if (layoutParams.width != placeholder.getWidth()) {
+            layoutParams.width = placeholder.getWidth();
+            setLayoutParams(layoutParams);
+        }
+        x += list.getLeft() - getLeft();
+        y += list.getTop() - getTop();
+        if (ViewCompat.getTranslationX(this) != x) {
+            ViewCompat.setTranslationX(this, x);
+        }
+        if (ViewCompat.getTranslationY(this) != y) {
+            ViewCompat.setTranslationY(this, y);
+        }
+        setVisibility(VISIBLE);
+        return true;
+    }
+}
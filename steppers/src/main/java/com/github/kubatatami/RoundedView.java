@@ -18,13 +18,7 @@ package com.github.kubatatami;
 
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Rect;
-import android.graphics.RectF;
 import android.os.Build;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
@@ -35,11 +29,8 @@ import com.github.kubatatami.steppers.R;
 
 public class RoundedView extends View {
 
-    private Paint paint = new Paint(Paint.DITHER_FLAG);
-    private String text = null;
-    private boolean checked = false;
-    private int color = ContextCompat.getColor(getContext(), R.color.colorPrimary);
-
+    private final int defaultColor = ContextCompat.getColor(getContext(), R.color.colorPrimary);
+    private final StepCircle circle = new StepCircle(getContext(), defaultColor);
 
     public RoundedView(Context context) {
         super(context);
@@ -59,72 +50,46 @@ public class RoundedView extends View {
     }
 
     @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        super.onLayout(changed, l, t, r, b);
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        circle.setBounds(0, (h - w) / 2, w);
     }
 
+    /**
+     * All paints, glyphs and offsets are prepared when size, text or color changes,
+     * so drawing does not allocate.
+     */
     @Override
     protected void onDraw(Canvas canvas) {
-        paint.setAntiAlias(true);
-        paint.setFilterBitmap(true);
-        paint.setDither(true);
-        canvas.drawARGB(0, 0, 0, 0);
-
-        paint.setColor(color);
-        canvas.drawCircle(getWidth() / 2, getHeight() / 2,
-                getWidth() / 2, paint);
-
-        if(text != null && !checked) {
-            drawText(canvas);
-        }
+        circle.draw(canvas);
+    }
 
-        if(checked && text == null) {
-            drawChecked(canvas);
-        }
+    StepCircle getCircle() {
+        return circle;
     }
 
     public void setCircleColor(int color) {
-        this.color = color;
-        invalidate();
+        if (circle.setColor(color)) {
+            invalidate();
+        }
     }
 
     public void setText(String text) {
-        color = ContextCompat.getColor(getContext(), R.color.colorPrimary);
-        this.text = text;
-        this.checked = false;
-        invalidate();
-    }
-
-    public void setChecked(boolean checked){
-        this.checked = checked;
-        text = null;
-        invalidate();
+        setCircleColor(defaultColor);
+        if (circle.setText(text)) {
+            invalidate();
+        }
     }
 
-    private void drawText(Canvas canvas) {
-        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paint.setTextSize(getResources().getDimension(R.dimen.item_circle_text_size));
-
-        Rect areaRect = new Rect(0, 0, canvas.getWidth(), canvas.getHeight());
-        RectF bounds = new RectF(areaRect);
-
-        bounds.right = paint.measureText(text, 0, text.length());
-        bounds.bottom = paint.descent() - paint.ascent();
-        bounds.left += (areaRect.width() - bounds.right) / 2.0f;
-        bounds.top += (areaRect.height() - bounds.bottom) / 2.0f;
-
-        paint.setColor(Color.WHITE);
-
-        canvas.drawText(text, bounds.left, bounds.top - paint.ascent(), paint);
+    public void setPending(boolean pending) {
+        if (circle.setPending(pending)) {
+            invalidate();
+        }
     }
 
-    private void drawChecked(Canvas canvas) {
-        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        Bitmap bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.ic_check);
-
-        float posX = (canvas.getWidth()  - bitmap.getWidth()) / 2;
-        float posY = (canvas.getHeight() - bitmap.getHeight()) / 2;
-
-        canvas.drawBitmap(bitmap, posX, posY, paint);
+    public void setChecked(boolean checked){
+        if (circle.setChecked(checked)) {
+            invalidate();
+        }
     }
 }
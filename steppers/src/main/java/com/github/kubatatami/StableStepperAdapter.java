@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+/**
+ * {@link StepperAdapter} whose steps keep their identity when steps are inserted, removed or moved.
+ * Fragments, retained fragments and the current step follow the id instead of the position.
+ */
+public interface StableStepperAdapter extends StepperAdapter {
+
+    /**
+     * @return id unique among the steps of this adapter, which does not change while the step exists
+     */
+    long getStepId(int step);
+
+}
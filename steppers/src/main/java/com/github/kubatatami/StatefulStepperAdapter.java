@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.os.Bundle;
+
+/**
+ * {@link StepperAdapter} which keeps per step data in the state of {@link SteppersView},
+ * so it survives process death without being queried again.
+ * States are restored lazily, when their step is bound for the first time.
+ */
+public interface StatefulStepperAdapter extends StepperAdapter {
+
+    /**
+     * @return state of the step or null if it has none; keep it small, states of steps far
+     * from the current one are dropped when they do not fit in the saved state budget
+     */
+    Bundle saveStepState(int step);
+
+    void restoreStepState(int step, Bundle state);
+
+}
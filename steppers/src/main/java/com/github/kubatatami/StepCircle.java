@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.text.TextUtils;
+
+import com.github.kubatatami.steppers.R;
+
+/**
+ * Draws a step circle with its number, check mark or pending state. Glyphs come from
+ * {@link StepGlyphCache} and all offsets are computed when bounds or state change, so
+ * {@link #draw(Canvas)} does not allocate.
+ */
+final class StepCircle {
+
+    private static final String PENDING_TEXT = "\u2026";
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+    private final Paint glyphPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final Context context;
+    private StepGlyphCache glyphCache;
+    private final float textSize;
+    private Bitmap glyph;
+    private String text = null;
+    private boolean checked = false;
+    private boolean pending = false;
+    private int color;
+    private float left;
+    private float top;
+    private float size;
+    private float glyphLeft;
+    private float glyphTop;
+
+    StepCircle(Context context, int color) {
+        this.context = context;
+        textSize = context.getResources().getDimension(R.dimen.item_circle_text_size);
+        this.color = color;
+        paint.setColor(color);
+    }
+
+    void setBounds(float left, float top, float size) {
+        this.left = left;
+        this.top = top;
+        this.size = size;
+        updateGlyphPosition();
+    }
+
+    boolean setColor(int color) {
+        if (this.color == color) {
+            return false;
+        }
+        this.color = color;
+        updatePaint();
+        return true;
+    }
+
+    /**
+     * A pending circle is drawn faded with an ellipsis, keeping its text or check mark for later.
+     */
+    boolean setPending(boolean pending) {
+        if (this.pending == pending) {
+            return false;
+        }
+        this.pending = pending;
+        updatePaint();
+        updateGlyph();
+        return true;
+    }
+
+    boolean setText(String text) {
+        if (!checked && TextUtils.equals(text, this.text)) {
+            return false;
+        }
+        this.text = text;
+        this.checked = false;
+        updateGlyph();
+        return true;
+    }
+
+    boolean setChecked(boolean checked) {
+        if (this.checked == checked && text == null) {
+            return false;
+        }
+        this.checked = checked;
+        text = null;
+        updateGlyph();
+        return true;
+    }
+
+    /**
+     * @return bitmap drawn inside the circle, or null for an empty circle
+     */
+    Bitmap getGlyph() {
+        return glyph;
+    }
+
+    void draw(Canvas canvas) {
+        float radius = size / 2;
+        canvas.drawCircle(left + radius, top + radius, radius, paint);
+        if (glyph != null) {
+            canvas.drawBitmap(glyph, glyphLeft, glyphTop, glyphPaint);
+        }
+    }
+
+    /**
+     * Draws with the given opacity, e.g. of a row faded by an item animation.
+     */
+    void draw(Canvas canvas, float alpha) {
+        if (alpha >= 1f) {
+            draw(canvas);
+            return;
+        }
+        int circleAlpha = paint.getAlpha();
+        paint.setAlpha((int) (circleAlpha * alpha));
+        glyphPaint.setAlpha((int) (255 * alpha));
+        draw(canvas);
+        paint.setAlpha(circleAlpha);
+        glyphPaint.setAlpha(255);
+    }
+
+    private void updatePaint() {
+        paint.setColor(color);
+        if (pending) {
+            paint.setAlpha(Color.alpha(color) / 2);
+        }
+    }
+
+    /**
+     * The glyph cache is looked up on the first state change, on the main thread, because
+     * circles can be created by rows inflated on a background thread.
+     */
+    private void updateGlyph() {
+        if (glyphCache == null) {
+            glyphCache = StepGlyphCache.get(context);
+        }
+        if (pending) {
+            glyph = glyphCache.getNumber(PENDING_TEXT, textSize, Color.WHITE);
+        } else if (text != null && !checked) {
+            glyph = glyphCache.getNumber(text, textSize, Color.WHITE);
+        } else if (checked && text == null) {
+            glyph = glyphCache.getCheck();
+        } else {
+            glyph = null;
+        }
+        updateGlyphPosition();
+    }
+
+    private void updateGlyphPosition() {
+        if (glyph != null) {
+            glyphLeft = left + (int) (size - glyph.getWidth()) / 2;
+            glyphTop = top + (int) (size - glyph.getHeight()) / 2;
+        }
+    }
+}
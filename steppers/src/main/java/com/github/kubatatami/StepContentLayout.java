@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
+import android.widget.FrameLayout;
+
+/**
+ * Content container of a step row. Newly shown content is revealed from the top by clipping it
+ * to a growing part of its measured height, so the row is laid out once and not on every frame.
+ */
+public class StepContentLayout extends FrameLayout {
+
+    private final Interpolator interpolator = new AccelerateDecelerateInterpolator();
+    private long revealDuration;
+    private long revealStart;
+    private boolean revealPending;
+    private int contentHeight;
+
+    public StepContentLayout(Context context) {
+        super(context);
+    }
+
+    public StepContentLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    /**
+     * Hides the content until {@link #startReveal()} is called, once the content is attached.
+     * If that does not happen within the duration, whatever content there is gets revealed.
+     */
+    void prepareReveal(long duration) {
+        revealDuration = duration;
+        revealPending = duration > 0;
+        revealStart = AnimationUtils.currentAnimationTimeMillis();
+        invalidate();
+    }
+
+    void startReveal() {
+        if (revealPending) {
+            revealPending = false;
+            revealStart = AnimationUtils.currentAnimationTimeMillis();
+            invalidate();
+        }
+    }
+
+    void cancelReveal() {
+        if (revealDuration > 0) {
+            revealPending = false;
+            revealDuration = 0;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        contentHeight = h;
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (revealDuration == 0) {
+            super.dispatchDraw(canvas);
+            return;
+        }
+        if (revealPending && AnimationUtils.currentAnimationTimeMillis() - revealStart >= revealDuration) {
+            startReveal();
+        }
+        float fraction = revealPending ? 0f
+                : (float) (AnimationUtils.currentAnimationTimeMillis() - revealStart) / revealDuration;
+        if (fraction >= 1f) {
+            revealDuration = 0;
+            super.dispatchDraw(canvas);
+            return;
+        }
+        int height = getRevealHeight(contentHeight, getResources().getDisplayMetrics().heightPixels,
+                interpolator.getInterpolation(fraction));
+        int saveCount = canvas.save();
+        canvas.clipRect(0, 0, getWidth(), height);
+        super.dispatchDraw(canvas);
+        canvas.restoreToCount(saveCount);
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    /**
+     * @return height of the shown part of the content at the given reveal progress. Content taller than
+     * the screen is revealed over one screen height and shown whole at the end, so the part of it on screen
+     * appears at the same pace as shorter content.
+     */
+    static int getRevealHeight(int contentHeight, int maxRevealHeight, float progress) {
+        if (progress >= 1f) {
+            return contentHeight;
+        }
+        return Math.round(Math.min(contentHeight, maxRevealHeight) * Math.max(progress, 0f));
+    }
+}
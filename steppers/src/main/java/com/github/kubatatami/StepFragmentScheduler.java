@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+import android.support.v4.app.FragmentTransaction;
+import android.support.v4.util.LongSparseArray;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Collects the fragment changes requested for step rows during a frame and applies them
+ * in a single transaction on the next animation frame. The transaction is built from the
+ * step which is current at that moment, so rapid step changes only touch the
+ * {@link FragmentManager} for their final target, and nothing is committed when all
+ * fragments are already where they belong.
+ * <p>
+ * Fragments of steps close to the current one can be retained: they are detached instead
+ * of removed, up to a configured count with the least recently current evicted first.
+ * <p>
+ * When prefetching is enabled, the fragments of the next and/or previous step are added
+ * hidden to their rows while the main thread is idle, so a step change only has to show
+ * them. Prefetched fragments which are no longer next to the current step are treated
+ * like any other non-current fragment.
+ * <p>
+ * Steps are tracked by their id, so fragments follow steps which change position and
+ * fragments of removed steps are removed.
+ * <p>
+ * The saved state of a fragment removed from a step which still exists is kept in a
+ * size bounded cache and set to the step's new fragment when it is created again.
+ */
+final class StepFragmentScheduler implements Runnable {
+
+    private final InternalSteppersAdapter adapter;
+    private final FragmentManager fragmentManager;
+    private final View view;
+    private final LongSparseArray<Boolean> stepIds = new LongSparseArray<>();
+    private final LinkedHashMap<Long, Boolean> retainedStepIds = new LinkedHashMap<>();
+    private final LongSparseArray<Boolean> prefetchedStepIds = new LongSparseArray<>();
+    private final StepStateCache savedStates = new StepStateCache(StepStateCache.DEFAULT_MAX_SIZE);
+    private final MessageQueue.IdleHandler prefetchHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            prefetchScheduled = !scheduled && prefetch();
+            return prefetchScheduled;
+        }
+    };
+    private int retainedStepCount;
+    private boolean prefetchNext;
+    private boolean prefetchPrevious;
+    private boolean scheduled;
+    private boolean prefetchScheduled;
+
+    StepFragmentScheduler(InternalSteppersAdapter adapter, FragmentManager fragmentManager, View view) {
+        this.adapter = adapter;
+        this.fragmentManager = fragmentManager;
+        this.view = view;
+    }
+
+    /**
+     * Requests the fragment of the given step to be reconciled with the current step.
+     */
+    void schedule(int step) {
+        if (adapter.isValidStep(step)) {
+            stepIds.put(adapter.getStepId(step), Boolean.TRUE);
+        }
+        if (!scheduled) {
+            scheduled = true;
+            ViewCompat.postOnAnimation(view, this);
+        }
+    }
+
+    void setRetainedStepCount(int retainedStepCount) {
+        this.retainedStepCount = retainedStepCount;
+        schedule(RecyclerView.NO_POSITION);
+    }
+
+    void setSavedStateCacheSize(int size) {
+        savedStates.setMaxSize(size);
+    }
+
+    void clearSavedStates() {
+        savedStates.clear();
+    }
+
+    void setPrefetch(boolean next, boolean previous) {
+        this.prefetchNext = next;
+        this.prefetchPrevious = previous;
+        schedule(RecyclerView.NO_POSITION);
+    }
+
+    /**
+     * Removes all retained fragments right away.
+     */
+    void releaseRetained() {
+        FragmentTransaction transaction = null;
+        long currentStepId = getCurrentStepId();
+        for (Long stepId : retainedStepIds.keySet()) {
+            Fragment fragment = fragmentManager.findFragmentByTag(adapter.getFragmentTag(stepId));
+            if (fragment != null && stepId != currentStepId) {
+                transaction = remove(transaction, fragment, stepId);
+            }
+        }
+        retainedStepIds.clear();
+        commit(transaction);
+    }
+
+    void cancel() {
+        if (scheduled) {
+            scheduled = false;
+            view.removeCallbacks(this);
+        }
+        if (prefetchScheduled) {
+            prefetchScheduled = false;
+            Looper.myQueue().removeIdleHandler(prefetchHandler);
+        }
+    }
+
+    @Override
+    public void run() {
+        scheduled = false;
+        StepperMetrics metrics = adapter.getMetrics();
+        long start = metrics.begin(StepperMetrics.TRACE_FRAGMENT_TRANSACTION);
+        try {
+            reconcile();
+        } finally {
+            metrics.endFragmentTransaction(start);
+        }
+        schedulePrefetch();
+    }
+
+    private void reconcile() {
+        int currentStep = adapter.getCurrentStep();
+        long currentStepId = getCurrentStepId();
+        FragmentTransaction transaction = null;
+        for (Long stepId : retainedStepIds.keySet()) {
+            stepIds.put(stepId, Boolean.TRUE);
+        }
+        for (int i = 0; i < prefetchedStepIds.size(); i++) {
+            stepIds.put(prefetchedStepIds.keyAt(i), Boolean.TRUE);
+        }
+        for (int i = 0; i < stepIds.size(); i++) {
+            long stepId = stepIds.keyAt(i);
+            int step = adapter.getStepPosition(stepId);
+            Fragment fragment = stepId != currentStepId ? fragmentManager.findFragmentByTag(adapter.getFragmentTag(stepId)) : null;
+            if (fragment != null && isPrefetchTarget(step, currentStep) && isInAttachedRow(fragment)) {
+                if (!fragment.isHidden()) {
+                    transaction = beginTransaction(transaction);
+                    transaction.hide(fragment);
+                }
+                prefetchedStepIds.put(stepId, Boolean.TRUE);
+                retainedStepIds.remove(stepId);
+                continue;
+            }
+            prefetchedStepIds.delete(stepId);
+            if (fragment == null) {
+                retainedStepIds.remove(stepId);
+            } else if (step != RecyclerView.NO_POSITION && Math.abs(step - currentStep) <= retainedStepCount) {
+                if (!fragment.isDetached()) {
+                    transaction = beginTransaction(transaction);
+                    transaction.detach(fragment);
+                }
+                if (!retainedStepIds.containsKey(stepId)) {
+                    retainedStepIds.put(stepId, Boolean.TRUE);
+                }
+            } else if (step == RecyclerView.NO_POSITION) {
+                transaction = beginTransaction(transaction);
+                transaction.remove(fragment);
+                retainedStepIds.remove(stepId);
+                savedStates.remove(stepId);
+            } else {
+                transaction = remove(transaction, fragment, stepId);
+                retainedStepIds.remove(stepId);
+            }
+        }
+        stepIds.clear();
+        if (adapter.isValidStep(currentStep)) {
+            stepIds.put(currentStepId, Boolean.TRUE);
+        }
+        retainedStepIds.remove(currentStepId);
+        prefetchedStepIds.delete(currentStepId);
+        transaction = evictRetained(transaction);
+
+        ViewGroup container = adapter.getActiveContentContainer();
+        if (container != null) {
+            String tag = adapter.getFragmentTag(currentStepId);
+            Fragment fragment = fragmentManager.findFragmentByTag(tag);
+            if (fragment != null && fragment.isDetached() && fragment.getId() == container.getId()) {
+                transaction = beginTransaction(transaction);
+                transaction.attach(fragment);
+                if (fragment.isHidden()) {
+                    transaction.show(fragment);
+                }
+            } else if (fragment != null && fragment.isHidden() && fragment.getView() != null
+                    && fragment.getView().getParent() == container) {
+                transaction = beginTransaction(transaction);
+                transaction.show(fragment);
+            } else if (fragment == null || fragment.getView() == null || fragment.getView().getParent() != container) {
+                transaction = fragment != null ? remove(transaction, fragment, currentStepId) : beginTransaction(transaction);
+                transaction.add(container.getId(), createFragment(currentStep, currentStepId), tag);
+            }
+        }
+
+        commit(transaction);
+        if (container != null) {
+            adapter.getMetrics().onContentCommitted(container);
+            adapter.revealActiveContent();
+        }
+    }
+
+    private void schedulePrefetch() {
+        if ((prefetchNext || prefetchPrevious) && !prefetchScheduled) {
+            prefetchScheduled = true;
+            Looper.myQueue().addIdleHandler(prefetchHandler);
+        }
+    }
+
+    /**
+     * Adds one missing prefetch target hidden to its row.
+     *
+     * @return true if there may be more targets to prefetch
+     */
+    private boolean prefetch() {
+        int currentStep = adapter.getCurrentStep();
+        for (int i = 0; i < 2; i++) {
+            int step = i == 0 ? currentStep + 1 : currentStep - 1;
+            if (!isPrefetchTarget(step, currentStep) || !adapter.isValidStep(step)) {
+                continue;
+            }
+            long stepId = adapter.getStepId(step);
+            String tag = adapter.getFragmentTag(stepId);
+            Fragment fragment = fragmentManager.findFragmentByTag(tag);
+            if (fragment != null && !fragment.isDetached()) {
+                continue;
+            }
+            ViewGroup container = adapter.getPrefetchContentContainer(step);
+            if (container == null) {
+                continue;
+            }
+            FragmentTransaction transaction = fragmentManager.beginTransaction();
+            if (fragment != null && fragment.getId() == container.getId()) {
+                transaction.attach(fragment);
+                retainedStepIds.remove(stepId);
+            } else {
+                if (fragment != null) {
+                    remove(transaction, fragment, stepId);
+                    retainedStepIds.remove(stepId);
+                }
+                fragment = createFragment(step, stepId);
+                transaction.add(container.getId(), fragment, tag);
+            }
+            transaction.hide(fragment);
+            prefetchedStepIds.put(stepId, Boolean.TRUE);
+            commit(transaction);
+            return true;
+        }
+        return false;
+    }
+
+    private long getCurrentStepId() {
+        int currentStep = adapter.getCurrentStep();
+        return adapter.isValidStep(currentStep) ? adapter.getStepId(currentStep) : RecyclerView.NO_ID;
+    }
+
+    private boolean isPrefetchTarget(int step, int currentStep) {
+        return step != RecyclerView.NO_POSITION
+                && (step == currentStep + 1 && prefetchNext || step == currentStep - 1 && prefetchPrevious);
+    }
+
+    private boolean isInAttachedRow(Fragment fragment) {
+        return !fragment.isDetached() && fragment.getView() != null
+                && ViewCompat.isAttachedToWindow(fragment.getView());
+    }
+
+    private FragmentTransaction evictRetained(FragmentTransaction transaction) {
+        Iterator<Long> iterator = retainedStepIds.keySet().iterator();
+        while (retainedStepIds.size() > retainedStepCount && iterator.hasNext()) {
+            long stepId = iterator.next();
+            Fragment fragment = fragmentManager.findFragmentByTag(adapter.getFragmentTag(stepId));
+            if (fragment != null) {
+                transaction = remove(transaction, fragment, stepId);
+            }
+            iterator.remove();
+        }
+        return transaction;
+    }
+
+    /**
+     * Removes the fragment of a step, keeping its saved state for when the step is shown again.
+     */
+    private FragmentTransaction remove(FragmentTransaction transaction, Fragment fragment, long stepId) {
+        savedStates.put(stepId, fragmentManager.saveFragmentInstanceState(fragment));
+        transaction = beginTransaction(transaction);
+        transaction.remove(fragment);
+        return transaction;
+    }
+
+    private Fragment createFragment(int step, long stepId) {
+        StepperMetrics metrics = adapter.getMetrics();
+        long start = metrics.begin(StepperMetrics.TRACE_CREATE_FRAGMENT);
+        Fragment fragment;
+        try {
+            fragment = adapter.createFragment(step);
+        } finally {
+            metrics.endFragmentCreated(step, start);
+        }
+        Fragment.SavedState state = savedStates.take(stepId);
+        // the state can only be set on a fragment which is not in a fragment manager
+        if (state != null && !fragment.isAdded() && !fragment.isDetached()) {
+            fragment.setInitialSavedState(state);
+        }
+        return fragment;
+    }
+
+    private void commit(FragmentTransaction transaction) {
+        if (transaction != null) {
+            transaction.setAllowOptimization(true);
+            transaction.commitNowAllowingStateLoss();
+        }
+    }
+
+    private FragmentTransaction beginTransaction(FragmentTransaction transaction) {
+        return transaction != null ? transaction : fragmentManager.beginTransaction();
+    }
+}
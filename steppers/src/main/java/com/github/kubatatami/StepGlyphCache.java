@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+
+import com.github.kubatatami.steppers.R;
+
+/**
+ * Process-wide cache of the glyphs drawn inside step circles: the check mark and the
+ * pre-rendered step numbers. Glyphs are kept once per density, text size and color in a
+ * bounded LRU, which is released when the system asks the application to trim memory.
+ * Must be used from the main thread only.
+ */
+final class StepGlyphCache {
+
+    private static final int MAX_SIZE_BYTES = 512 * 1024;
+
+    private static StepGlyphCache instance;
+
+    private final Resources resources;
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final LruCache<String, Bitmap> cache = new LruCache<String, Bitmap>(MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getRowBytes() * value.getHeight();
+        }
+    };
+
+    private StepGlyphCache(Resources resources) {
+        this.resources = resources;
+    }
+
+    static StepGlyphCache get(Context context) {
+        if (instance == null) {
+            Context applicationContext = context.getApplicationContext();
+            if (applicationContext == null) {
+                applicationContext = context;
+            }
+            instance = new StepGlyphCache(applicationContext.getResources());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                instance.registerTrimMemoryCallbacks(applicationContext);
+            }
+        }
+        return instance;
+    }
+
+    Bitmap getCheck() {
+        String key = "check:" + resources.getDisplayMetrics().densityDpi;
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = BitmapFactory.decodeResource(resources, R.drawable.ic_check);
+            cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    Bitmap getNumber(String text, float textSize, int color) {
+        String key = "text:" + text + ":" + textSize + ":" + color;
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = renderText(text, textSize, color);
+            cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private Bitmap renderText(String text, float textSize, int color) {
+        textPaint.setTextSize(textSize);
+        textPaint.setColor(color);
+        int width = (int) Math.ceil(textPaint.measureText(text, 0, text.length()));
+        int height = (int) Math.ceil(textPaint.descent() - textPaint.ascent());
+        Bitmap bitmap = Bitmap.createBitmap(Math.max(width, 1), Math.max(height, 1), Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawText(text, 0, -textPaint.ascent(), textPaint);
+        return bitmap;
+    }
+
+    /**
+     * Kept out of the class itself, which has to load on devices without {@link ComponentCallbacks2}.
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerTrimMemoryCallbacks(Context applicationContext) {
+        applicationContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_BACKGROUND) {
+                    cache.evictAll();
+                } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    cache.trimToSize(MAX_SIZE_BYTES / 2);
+                }
+            }
+
+            @Override
+            public void onLowMemory() {
+                cache.evictAll();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.github.kubatatami.steppers.R;
+
+/**
+ * Draws the rail lines and step circles of all rows inflated from {@code item_steppers_rail}
+ * in one pass over the {@link RecyclerView}, so rows only contain their texts and content.
+ * Circles are kept by the holders, which the adapter binds like the circle views of
+ * {@code item_steppers}; they follow the translation and alpha of the rows while they are animated.
+ * In a right-to-left layout the rail is drawn along the right edge of the rows.
+ */
+final class StepRailDecoration extends RecyclerView.ItemDecoration {
+
+    private final Paint linePaint = new Paint();
+    private final int lineAlpha;
+    private final int circleSize;
+    private final int circleTop;
+    private final int lineAboveHeight;
+    private final int lineMargin;
+    private final int lineWidth;
+
+    StepRailDecoration(Context context) {
+        Resources resources = context.getResources();
+        circleSize = resources.getDimensionPixelSize(R.dimen.item_circle_width_height);
+        lineAboveHeight = resources.getDimensionPixelSize(R.dimen.item_line_first_height);
+        lineMargin = resources.getDimensionPixelSize(R.dimen.item_line_first_margin);
+        lineWidth = resources.getDimensionPixelSize(R.dimen.item_line_width);
+        circleTop = lineAboveHeight + lineMargin;
+        linePaint.setColor(ContextCompat.getColor(context, R.color.line_color));
+        lineAlpha = linePaint.getAlpha();
+    }
+
+    @Override
+    public void onDraw(Canvas canvas, RecyclerView parent, RecyclerView.State state) {
+        boolean rtl = ViewCompat.getLayoutDirection(parent) == ViewCompat.LAYOUT_DIRECTION_RTL;
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            SteppersViewHolder holder = (SteppersViewHolder) parent.getChildViewHolder(child);
+            StepCircle circle = holder.railCircle;
+            float alpha = ViewCompat.getAlpha(child);
+            if (circle == null || alpha <= 0f) {
+                continue;
+            }
+            // rows fade in and out while they are added or removed
+            linePaint.setAlpha((int) (lineAlpha * alpha));
+            float left = (rtl ? child.getRight() - circleSize : child.getLeft()) + ViewCompat.getTranslationX(child);
+            float top = child.getTop() + ViewCompat.getTranslationY(child);
+            float lineLeft = left + (circleSize - lineWidth) / 2;
+            if (holder.railLineAbove) {
+                canvas.drawRect(lineLeft, top, lineLeft + lineWidth, top + lineAboveHeight, linePaint);
+            }
+            circle.setBounds(left, top + circleTop, circleSize);
+            circle.draw(canvas, alpha);
+            if (holder.railLineBelow) {
+                canvas.drawRect(lineLeft, top + circleTop + circleSize + lineMargin,
+                        lineLeft + lineWidth, top + child.getHeight(), linePaint);
+            }
+        }
+    }
+}
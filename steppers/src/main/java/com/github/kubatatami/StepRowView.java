@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
+import android.text.StaticLayout;
+import android.text.TextUtils;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.github.kubatatami.steppers.R;
+
+/**
+ * Single view replacement for {@code item_steppers}. Draws the rail, circle, label and
+ * sub-label itself using {@link StaticLayout}s from {@link StepTextLayoutCache}, and creates
+ * a content container only once the row is shown as the active step. The label and sub-label
+ * are its content description, and it is mirrored in right-to-left layouts.
+ */
+class StepRowView extends ViewGroup {
+
+    private final StepCircle circle;
+    private final Paint linePaint = new Paint();
+    private StepTextLayoutCache textLayoutCache;
+    private final int marginLeftRight;
+    private final int circleSize;
+    private final int circleTop;
+    private final int lineAboveHeight;
+    private final int lineMargin;
+    private final int lineWidth;
+    private final int textMarginLeft;
+    private final int textMarginTop;
+    private final int contentMargin;
+
+    private FrameLayout contentContainer;
+    private int step;
+    private CharSequence label = "";
+    private CharSequence subLabel = "";
+    private boolean labelBold;
+    private int labelColor;
+    private int subLabelColor;
+    private float labelTextSize;
+    private float subLabelTextSize;
+    private StaticLayout labelLayout;
+    private StaticLayout subLabelLayout;
+    private boolean lineAboveVisible = true;
+    private boolean lineBelowVisible = true;
+
+    StepRowView(Context context) {
+        super(context);
+        Resources resources = getResources();
+        marginLeftRight = resources.getDimensionPixelSize(R.dimen.item_margin_left_right);
+        circleSize = resources.getDimensionPixelSize(R.dimen.item_circle_width_height);
+        lineAboveHeight = resources.getDimensionPixelSize(R.dimen.item_line_first_height);
+        lineMargin = resources.getDimensionPixelSize(R.dimen.item_line_first_margin);
+        lineWidth = resources.getDimensionPixelSize(R.dimen.item_line_width);
+        textMarginLeft = resources.getDimensionPixelSize(R.dimen.item_text_margin_left);
+        textMarginTop = resources.getDimensionPixelSize(R.dimen.item_text_margin_top);
+        contentMargin = resources.getDimensionPixelSize(R.dimen.item_frame_margin_top_bottom);
+        circleTop = lineAboveHeight + lineMargin;
+        circle = new StepCircle(context, ContextCompat.getColor(context, R.color.colorPrimary));
+        linePaint.setColor(ContextCompat.getColor(context, R.color.line_color));
+        setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+        setWillNotDraw(false);
+    }
+
+    void setCircleColor(int color) {
+        if (circle.setColor(color)) {
+            invalidate();
+        }
+    }
+
+    void setCircleText(String text) {
+        if (circle.setText(text)) {
+            invalidate();
+        }
+    }
+
+    void setCirclePending(boolean pending) {
+        if (circle.setPending(pending)) {
+            invalidate();
+        }
+    }
+
+    void setCircleChecked(boolean checked) {
+        if (circle.setChecked(checked)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Rows can be shared between steppers through a view pool, so the cache comes from
+     * the adapter binding the row.
+     */
+    void setTextLayoutCache(StepTextLayoutCache textLayoutCache) {
+        if (this.textLayoutCache != textLayoutCache) {
+            this.textLayoutCache = textLayoutCache;
+            labelLayout = null;
+            subLabelLayout = null;
+            requestLayout();
+        }
+    }
+
+    void setLabel(int step, CharSequence label, CharSequence subLabel) {
+        label = label == null ? "" : label;
+        subLabel = subLabel == null ? "" : subLabel;
+        if (this.step != step) {
+            this.step = step;
+            labelLayout = null;
+            subLabelLayout = null;
+            requestLayout();
+        }
+        boolean textChanged = false;
+        if (!TextUtils.equals(this.label, label)) {
+            this.label = label;
+            labelLayout = null;
+            textChanged = true;
+            requestLayout();
+        }
+        if (!TextUtils.equals(this.subLabel, subLabel)) {
+            this.subLabel = subLabel;
+            subLabelLayout = null;
+            textChanged = true;
+            requestLayout();
+        }
+        if (textChanged) {
+            setContentDescription(subLabel.length() > 0 ? TextUtils.concat(label, ", ", subLabel) : label);
+        }
+    }
+
+    void setSubLabel(int step, CharSequence subLabel) {
+        setLabel(step, label, subLabel);
+    }
+
+    void setLabelStyle(int color, boolean bold) {
+        if (labelBold != bold) {
+            labelBold = bold;
+            labelLayout = null;
+            requestLayout();
+        }
+        if (labelColor != color) {
+            labelColor = color;
+            invalidate();
+        }
+    }
+
+    void setSubLabelColor(int color) {
+        if (subLabelColor != color) {
+            subLabelColor = color;
+            invalidate();
+        }
+    }
+
+    void setTextSizes(float labelTextSize, float subLabelTextSize) {
+        if (this.labelTextSize != labelTextSize) {
+            this.labelTextSize = labelTextSize;
+            labelLayout = null;
+            requestLayout();
+        }
+        if (this.subLabelTextSize != subLabelTextSize) {
+            this.subLabelTextSize = subLabelTextSize;
+            subLabelLayout = null;
+            requestLayout();
+        }
+    }
+
+    void setLinesVisible(boolean above, boolean below) {
+        if (lineAboveVisible != above || lineBelowVisible != below) {
+            lineAboveVisible = above;
+            lineBelowVisible = below;
+            invalidate();
+        }
+    }
+
+    FrameLayout getContentContainer() {
+        return contentContainer;
+    }
+
+    FrameLayout ensureContentContainer() {
+        if (contentContainer == null) {
+            contentContainer = new StepContentLayout(getContext());
+            contentContainer.setId(ViewIdGenerator.generateViewId());
+            addView(contentContainer, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+        }
+        return contentContainer;
+    }
+
+    void setContentVisible(boolean visible) {
+        if (visible) {
+            ensureContentContainer().setVisibility(VISIBLE);
+        } else if (contentContainer != null) {
+            contentContainer.setVisibility(GONE);
+        }
+    }
+
+    private boolean isRtl() {
+        return ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL;
+    }
+
+    private int getTextStart() {
+        return marginLeftRight + circleSize + textMarginLeft;
+    }
+
+    private int getTextLeft() {
+        return isRtl() ? marginLeftRight : getTextStart();
+    }
+
+    private int getCircleLeft() {
+        return isRtl() ? getWidth() - marginLeftRight - circleSize : marginLeftRight;
+    }
+
+    private void ensureTextLayouts(int width) {
+        if (labelLayout == null || labelLayout.getWidth() != width) {
+            labelLayout = textLayoutCache.get(step, StepTextLayoutCache.LABEL, label, labelTextSize, labelBold, width);
+        }
+        if (subLabelLayout == null || subLabelLayout.getWidth() != width) {
+            subLabelLayout = textLayoutCache.get(step, StepTextLayoutCache.SUB_LABEL, subLabel, subLabelTextSize, false, width);
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int textWidth = Math.max(0, width - getTextStart() - marginLeftRight);
+        ensureTextLayouts(textWidth);
+        int textBottom = textMarginTop + labelLayout.getHeight() + subLabelLayout.getHeight();
+        int height = Math.max(textBottom, circleTop + circleSize + lineMargin);
+        if (contentContainer != null && contentContainer.getVisibility() != GONE) {
+            int contentHeight = contentContainer.getLayoutParams().height;
+            contentContainer.measure(MeasureSpec.makeMeasureSpec(textWidth, MeasureSpec.EXACTLY), contentHeight >= 0
+                    ? MeasureSpec.makeMeasureSpec(contentHeight, MeasureSpec.EXACTLY)
+                    : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+            height = textBottom + contentMargin + contentContainer.getMeasuredHeight() + contentMargin;
+        }
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        circle.setBounds(getCircleLeft(), circleTop, circleSize);
+        if (contentContainer != null && contentContainer.getVisibility() != GONE) {
+            int left = getTextLeft();
+            int top = textMarginTop + labelLayout.getHeight() + subLabelLayout.getHeight() + contentMargin;
+            contentContainer.layout(left, top, left + contentContainer.getMeasuredWidth(),
+                    top + contentContainer.getMeasuredHeight());
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float lineLeft = getCircleLeft() + (circleSize - lineWidth) / 2;
+        if (lineAboveVisible) {
+            canvas.drawRect(lineLeft, 0, lineLeft + lineWidth, lineAboveHeight, linePaint);
+        }
+        if (lineBelowVisible) {
+            canvas.drawRect(lineLeft, circleTop + circleSize + lineMargin, lineLeft + lineWidth, getHeight(), linePaint);
+        }
+        circle.draw(canvas);
+        if (labelLayout != null && subLabelLayout != null) {
+            int saveCount = canvas.save();
+            canvas.translate(getTextLeft(), textMarginTop);
+            labelLayout.getPaint().setColor(labelColor);
+            labelLayout.draw(canvas);
+            canvas.translate(0, labelLayout.getHeight());
+            subLabelLayout.getPaint().setColor(subLabelColor);
+            subLabelLayout.draw(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.v4.app.Fragment;
+import android.support.v4.util.LruCache;
+
+import java.util.Map;
+
+/**
+ * Saved states of fragments removed from steps which are not current, keyed by step id
+ * and bounded by their total parceled size. The least recently saved ones are evicted first.
+ */
+final class StepStateCache {
+
+    static final int DEFAULT_MAX_SIZE = 256 * 1024;
+
+    private LruCache<Long, Entry> states;
+    private int maxSize;
+
+    StepStateCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * @param maxSize total size in bytes, 0 disables the cache
+     */
+    void setMaxSize(int maxSize) {
+        LruCache<Long, Entry> oldStates = states;
+        this.maxSize = maxSize;
+        states = maxSize > 0 ? new LruCache<Long, Entry>(maxSize) {
+            @Override
+            protected int sizeOf(Long key, Entry entry) {
+                return entry.size;
+            }
+        } : null;
+        if (oldStates != null && states != null) {
+            for (Map.Entry<Long, Entry> entry : oldStates.snapshot().entrySet()) {
+                states.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    void put(long stepId, Fragment.SavedState state) {
+        if (states == null) {
+            return;
+        }
+        int size = state != null ? measure(state) : 0;
+        if (state == null || size > maxSize) {
+            states.remove(stepId);
+        } else {
+            states.put(stepId, new Entry(state, size));
+        }
+    }
+
+    /**
+     * @return saved state of the step, which is removed from the cache
+     */
+    Fragment.SavedState take(long stepId) {
+        Entry entry = states != null ? states.remove(stepId) : null;
+        return entry != null ? entry.state : null;
+    }
+
+    void remove(long stepId) {
+        if (states != null) {
+            states.remove(stepId);
+        }
+    }
+
+    void clear() {
+        if (states != null) {
+            states.evictAll();
+        }
+    }
+
+    static int measure(Parcelable state) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelable(state, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static final class Entry {
+
+        final Fragment.SavedState state;
+        final int size;
+
+        Entry(Fragment.SavedState state, int size) {
+            this.state = state;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import java.util.BitSet;
+
+/**
+ * Status of all steps: the active one and which are done, skipped or in error, kept in bit sets
+ * indexed by step position. It has no Android dependencies.
+ * <p>
+ * Every change returns the steps whose {@link StepStatus} changed, so only their rows are rebound.
+ * The returned set is owned by the engine and valid until the next change.
+ */
+final class StepStateEngine {
+
+    private final BitSet done = new BitSet();
+    private final BitSet skipped = new BitSet();
+    private final BitSet error = new BitSet();
+    private final BitSet changed = new BitSet();
+    private int stepCount;
+    private int activeStep;
+
+    int getStepCount() {
+        return stepCount;
+    }
+
+    int getActiveStep() {
+        return activeStep;
+    }
+
+    boolean isActive(int step) {
+        return step == activeStep;
+    }
+
+    boolean isDone(int step) {
+        return done.get(step);
+    }
+
+    boolean isSkipped(int step) {
+        return skipped.get(step);
+    }
+
+    boolean isError(int step) {
+        return error.get(step);
+    }
+
+    /**
+     * @return whether the step is done or skipped
+     */
+    boolean isCompleted(int step) {
+        return done.get(step) || skipped.get(step);
+    }
+
+    StepStatus getStatus(int step) {
+        if (error.get(step)) {
+            return StepStatus.ERROR;
+        } else if (step == activeStep) {
+            return StepStatus.ACTIVE;
+        } else if (skipped.get(step)) {
+            return StepStatus.SKIPPED;
+        } else if (done.get(step)) {
+            return StepStatus.DONE;
+        }
+        return StepStatus.INACTIVE;
+    }
+
+    /**
+     * Clears all statuses, the steps before the active one are done.
+     */
+    BitSet reset(int stepCount, int activeStep) {
+        this.stepCount = stepCount;
+        this.activeStep = activeStep;
+        done.clear();
+        skipped.clear();
+        error.clear();
+        done.set(0, Math.max(0, Math.min(activeStep, stepCount)));
+        changed.clear();
+        changed.set(0, stepCount);
+        return changed;
+    }
+
+    /**
+     * Makes the step active the linear way: moving forward marks the steps passed as done,
+     * moving back reopens the steps between.
+     */
+    BitSet moveTo(int step) {
+        changed.clear();
+        boolean forward = step > activeStep;
+        for (int i = Math.min(step, activeStep); i < Math.max(step, activeStep); i++) {
+            update(done, i, forward);
+        }
+        return activate(step);
+    }
+
+    /**
+     * Makes the step active without completing or reopening any other step.
+     */
+    BitSet setActive(int step) {
+        changed.clear();
+        return activate(step);
+    }
+
+    /**
+     * Clears the done, skipped and error statuses of all steps, keeping the active one.
+     */
+    void clearStatuses() {
+        done.clear();
+        skipped.clear();
+        error.clear();
+    }
+
+    BitSet setDone(int step, boolean value) {
+        changed.clear();
+        update(done, step, value);
+        return changed;
+    }
+
+    BitSet setSkipped(int step, boolean value) {
+        changed.clear();
+        update(skipped, step, value);
+        return changed;
+    }
+
+    BitSet setError(int step, boolean value) {
+        changed.clear();
+        update(error, step, value);
+        return changed;
+    }
+
+    void insertSteps(int step, int count) {
+        insert(done, step, count);
+        insert(skipped, step, count);
+        insert(error, step, count);
+        stepCount += count;
+        if (activeStep >= step) {
+            activeStep += count;
+        }
+    }
+
+    void removeSteps(int step, int count) {
+        remove(done, step, count);
+        remove(skipped, step, count);
+        remove(error, step, count);
+        stepCount -= count;
+        if (activeStep >= step + count) {
+            activeStep -= count;
+        } else if (activeStep >= step) {
+            activeStep = Math.max(0, Math.min(step, stepCount - 1));
+        }
+    }
+
+    void moveStep(int fromStep, int toStep) {
+        move(done, fromStep, toStep);
+        move(skipped, fromStep, toStep);
+        move(error, fromStep, toStep);
+        if (activeStep == fromStep) {
+            activeStep = toStep;
+        } else if (fromStep < activeStep && toStep >= activeStep) {
+            activeStep--;
+        } else if (fromStep > activeStep && toStep <= activeStep) {
+            activeStep++;
+        }
+    }
+
+    /**
+     * Drops the statuses of steps past the new count, new steps are not done.
+     */
+    void setStepCount(int stepCount) {
+        if (stepCount < this.stepCount) {
+            done.clear(stepCount, this.stepCount);
+            skipped.clear(stepCount, this.stepCount);
+            error.clear(stepCount, this.stepCount);
+        }
+        this.stepCount = stepCount;
+        activeStep = Math.max(0, Math.min(activeStep, stepCount - 1));
+    }
+
+    private BitSet activate(int step) {
+        if (step != activeStep) {
+            changed.set(activeStep);
+            changed.set(step);
+            activeStep = step;
+        }
+        return changed;
+    }
+
+    private void update(BitSet bits, int step, boolean value) {
+        if (bits.get(step) != value) {
+            StepStatus status = getStatus(step);
+            bits.set(step, value);
+            if (getStatus(step) != status) {
+                changed.set(step);
+            }
+        }
+    }
+
+    private static void insert(BitSet bits, int index, int count) {
+        for (int i = bits.length() - 1; i >= index; i--) {
+            bits.set(i + count, bits.get(i));
+        }
+        bits.clear(index, index + count);
+    }
+
+    private static void remove(BitSet bits, int index, int count) {
+        int length = bits.length();
+        for (int i = index; i < length; i++) {
+            bits.set(i, bits.get(i + count));
+        }
+    }
+
+    private static void move(BitSet bits, int from, int to) {
+        boolean value = bits.get(from);
+        remove(bits, from, 1);
+        insert(bits, to, 1);
+        bits.set(to, value);
+    }
+}
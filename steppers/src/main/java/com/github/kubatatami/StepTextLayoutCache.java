@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.v4.util.LruCache;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Label and sub-label layouts of flattened rows keyed by step, text, text size and width.
+ * Layouts of steps near the bound ones are measured ahead of time on a background thread,
+ * so binding usually attaches a ready-made layout instead of breaking lines in the layout pass.
+ * Every layout owns its paint, the row only changes that paint's color before drawing.
+ */
+final class StepTextLayoutCache {
+
+    static final int LABEL = 0;
+    static final int SUB_LABEL = 1;
+
+    private static final int MAX_LAYOUTS = 96;
+
+    private final LruCache<String, StaticLayout> layouts = new LruCache<>(MAX_LAYOUTS);
+    private final Set<String> pending = new HashSet<>();
+    private final float density;
+    private int textWidth;
+    private int generation;
+
+    StepTextLayoutCache(float density) {
+        this.density = density;
+    }
+
+    /**
+     * @return cached layout or a new one built on the calling thread
+     */
+    StaticLayout get(int step, int kind, CharSequence text, float textSize, boolean bold, int width) {
+        textWidth = width;
+        String key = makeKey(step, kind, text, textSize, bold, width);
+        StaticLayout layout = layouts.get(key);
+        if (layout == null) {
+            layout = build(text, textSize, bold, width);
+            layouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Measures a layout on a background thread unless it is cached or already being measured.
+     * Does nothing until the text width is known from the first measured row.
+     */
+    void prefetch(int step, int kind, CharSequence label, final float textSize, final boolean bold) {
+        final int width = textWidth;
+        final CharSequence text = label == null ? "" : label;
+        if (width <= 0) {
+            return;
+        }
+        final String key = makeKey(step, kind, text, textSize, bold, width);
+        if (layouts.get(key) != null || !pending.add(key)) {
+            return;
+        }
+        final int taskGeneration = generation;
+        SteppersExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                final StaticLayout layout = build(text, textSize, bold, width);
+                SteppersExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (taskGeneration == generation) {
+                            pending.remove(key);
+                            layouts.put(key, layout);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    void clear() {
+        generation++;
+        pending.clear();
+        layouts.evictAll();
+    }
+
+    private StaticLayout build(CharSequence text, float textSize, boolean bold, int width) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.density = density;
+        paint.setTextSize(textSize);
+        paint.setTypeface(bold ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT);
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, true);
+    }
+
+    private static String makeKey(int step, int kind, CharSequence text, float textSize, boolean bold, int width) {
+        return step + ":" + kind + ":" + textSize + ":" + bold + ":" + width + ":" + text;
+    }
+}
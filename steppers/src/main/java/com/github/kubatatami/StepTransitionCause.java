@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+/**
+ * What made the current step of a {@link SteppersView} change.
+ */
+public enum StepTransitionCause {
+    /** {@link SteppersView#nextStep()}, also when it advanced after validation. */
+    NEXT,
+    /** {@link SteppersView#prevStep()} */
+    PREVIOUS,
+    /** {@link SteppersView#setStep(int)} */
+    SET,
+    /** A done step was tapped. */
+    TAP,
+    /** The state of the view was restored. */
+    RESTORE,
+    /** Steps were inserted, removed or moved, or the adapter changed. */
+    STEPS_CHANGED
+}
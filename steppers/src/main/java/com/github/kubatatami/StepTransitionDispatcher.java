@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+/**
+ * Delivers changes of the current step at most once per frame: the changes requested during
+ * a frame are coalesced into one from the step current before them to the last one, with the
+ * cause of the last change, and nothing is delivered if they end on the starting step.
+ * <p>
+ * Listeners are kept in copy-on-write arrays, so dispatching does not allocate and listeners
+ * may be added or removed from a callback.
+ */
+final class StepTransitionDispatcher implements Runnable {
+
+    private static final SteppersView.OnStepTransitionListener[] NO_TRANSITION_LISTENERS =
+            new SteppersView.OnStepTransitionListener[0];
+    private static final SteppersView.OnStepChangedListener[] NO_CHANGED_LISTENERS =
+            new SteppersView.OnStepChangedListener[0];
+
+    private final View view;
+    private SteppersView.OnStepTransitionListener[] transitionListeners = NO_TRANSITION_LISTENERS;
+    private SteppersView.OnStepChangedListener[] changedListeners = NO_CHANGED_LISTENERS;
+    private boolean scheduled;
+    private int fromStep;
+    private int currentStep;
+    private StepTransitionCause cause;
+
+    StepTransitionDispatcher(View view) {
+        this.view = view;
+    }
+
+    void onStepChanged(int step, StepTransitionCause cause) {
+        if (!scheduled) {
+            if (step == currentStep) {
+                return;
+            }
+            scheduled = true;
+            fromStep = currentStep;
+            ViewCompat.postOnAnimation(view, this);
+        }
+        currentStep = step;
+        this.cause = cause;
+    }
+
+    @Override
+    public void run() {
+        scheduled = false;
+        int fromStep = this.fromStep;
+        int toStep = currentStep;
+        StepTransitionCause cause = this.cause;
+        if (fromStep == toStep) {
+            return;
+        }
+        SteppersView.OnStepTransitionListener[] transitionListeners = this.transitionListeners;
+        for (int i = 0; i < transitionListeners.length; i++) {
+            transitionListeners[i].onStepTransition(fromStep, toStep, cause);
+        }
+        SteppersView.OnStepChangedListener[] changedListeners = this.changedListeners;
+        for (int i = 0; i < changedListeners.length; i++) {
+            changedListeners[i].onStepChanged(toStep);
+        }
+    }
+
+    void addTransitionListener(SteppersView.OnStepTransitionListener listener) {
+        SteppersView.OnStepTransitionListener[] listeners =
+                new SteppersView.OnStepTransitionListener[transitionListeners.length + 1];
+        System.arraycopy(transitionListeners, 0, listeners, 0, transitionListeners.length);
+        listeners[transitionListeners.length] = listener;
+        transitionListeners = listeners;
+    }
+
+    void removeTransitionListener(SteppersView.OnStepTransitionListener listener) {
+        int index = indexOf(transitionListeners, listener);
+        if (index >= 0) {
+            SteppersView.OnStepTransitionListener[] listeners =
+                    new SteppersView.OnStepTransitionListener[transitionListeners.length - 1];
+            System.arraycopy(transitionListeners, 0, listeners, 0, index);
+            System.arraycopy(transitionListeners, index + 1, listeners, index, listeners.length - index);
+            transitionListeners = listeners;
+        }
+    }
+
+    void addChangedListener(SteppersView.OnStepChangedListener listener) {
+        SteppersView.OnStepChangedListener[] listeners =
+                new SteppersView.OnStepChangedListener[changedListeners.length + 1];
+        System.arraycopy(changedListeners, 0, listeners, 0, changedListeners.length);
+        listeners[changedListeners.length] = listener;
+        changedListeners = listeners;
+    }
+
+    void removeChangedListener(SteppersView.OnStepChangedListener listener) {
+        int index = indexOf(changedListeners, listener);
+        if (index >= 0) {
+            SteppersView.OnStepChangedListener[] listeners =
+                    new SteppersView.OnStepChangedListener[changedListeners.length - 1];
+            System.arraycopy(changedListeners, 0, listeners, 0, index);
+            System.arraycopy(changedListeners, index + 1, listeners, index, listeners.length - index);
+            changedListeners = listeners;
+        }
+    }
+
+    private static int indexOf(Object[] listeners, Object listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
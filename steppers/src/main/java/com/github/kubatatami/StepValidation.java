@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.support.v4.util.LongSparseArray;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.concurrent.Future;
+
+/**
+ * Runs a {@link StepValidator} on the background executor and keeps its results by step id
+ * until they are invalidated. One step is validated at a time; results of cancelled
+ * validations are dropped.
+ */
+final class StepValidation {
+
+    interface Callback {
+
+        void onStepValidated(long stepId, boolean valid);
+
+        void onValidationError(long stepId, Throwable error);
+    }
+
+    private final Callback callback;
+    private final LongSparseArray<Boolean> results = new LongSparseArray<>();
+    private StepValidator validator;
+    private Future<?> pending;
+    private long pendingStepId = RecyclerView.NO_ID;
+    private int generation;
+
+    StepValidation(Callback callback) {
+        this.callback = callback;
+    }
+
+    void setValidator(StepValidator validator) {
+        cancel();
+        results.clear();
+        this.validator = validator;
+    }
+
+    boolean isPending(long stepId) {
+        return pending != null && pendingStepId == stepId;
+    }
+
+    /**
+     * @return cached result, true if there is no validator or null if the step has to be validated
+     */
+    Boolean getResult(long stepId) {
+        return validator != null ? results.get(stepId) : Boolean.TRUE;
+    }
+
+    /**
+     * Starts validating the step, unless it is being validated already.
+     */
+    void validate(final int step, final long stepId) {
+        if (isPending(stepId)) {
+            return;
+        }
+        cancel();
+        final StepValidator validator = this.validator;
+        final int generation = ++this.generation;
+        pendingStepId = stepId;
+        pending = SteppersExecutors.background().submit(new Runnable() {
+            @Override
+            public void run() {
+                boolean valid = false;
+                Throwable error = null;
+                try {
+                    valid = validator.validate(step);
+                } catch (Throwable e) {
+                    // errors too, the executor would swallow them and leave the step pending
+                    error = e;
+                }
+                final boolean result = valid;
+                final Throwable failure = error;
+                SteppersExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != StepValidation.this.generation) {
+                            return;
+                        }
+                        pending = null;
+                        pendingStepId = RecyclerView.NO_ID;
+                        if (failure != null) {
+                            // not kept, the step is validated again next time
+                            callback.onValidationError(stepId, failure);
+                            return;
+                        }
+                        results.put(stepId, result);
+                        callback.onStepValidated(stepId, result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return id of the step whose validation was cancelled or {@link RecyclerView#NO_ID}
+     */
+    long cancel() {
+        long stepId = pendingStepId;
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+            generation++;
+        }
+        pendingStepId = RecyclerView.NO_ID;
+        return stepId;
+    }
+
+    /**
+     * Forgets the result of the step, a running validation is restarted with the changed input.
+     */
+    void invalidate(int step, long stepId) {
+        results.remove(stepId);
+        if (isPending(stepId)) {
+            cancel();
+            validate(step, stepId);
+        }
+    }
+
+    void clear() {
+        cancel();
+        results.clear();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+/**
+ * Checks a step before {@link SteppersView#nextStep()} advances from it.
+ */
+public interface StepValidator {
+
+    /**
+     * Called on a background thread. The validation is cancelled, interrupting the thread,
+     * when another step is selected meanwhile. If it throws, the step is marked with
+     * {@link StepStatus#ERROR} and the error is passed to
+     * {@link SteppersView.OnValidationFailedListener}.
+     *
+     * @return whether the stepper may advance from the step
+     */
+    boolean validate(int step);
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.support.v4.os.TraceCompat;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Trace sections and timings for {@link StepperMetricsListener}. Clock reads are skipped
+ * when there is no listener.
+ */
+final class StepperMetrics implements ViewTreeObserver.OnPreDrawListener {
+
+    static final String TRACE_BIND_ROW = "Steppers:bindRow";
+    static final String TRACE_CREATE_FRAGMENT = "Steppers:createFragment";
+    static final String TRACE_FRAGMENT_TRANSACTION = "Steppers:fragmentTransaction";
+
+    private StepperMetricsListener listener;
+    private View drawnView;
+    private boolean transitionPending;
+    private long transitionStart;
+    private int transitionFrom;
+    private int transitionTo;
+
+    void setListener(StepperMetricsListener listener) {
+        this.listener = listener;
+        if (listener == null) {
+            cancelTransition();
+        }
+    }
+
+    long begin(String section) {
+        TraceCompat.beginSection(section);
+        return listener != null ? System.nanoTime() : 0;
+    }
+
+    void endRowBound(int position, long start) {
+        TraceCompat.endSection();
+        if (listener != null) {
+            listener.onRowBound(position, System.nanoTime() - start);
+        }
+    }
+
+    void endFragmentCreated(int step, long start) {
+        TraceCompat.endSection();
+        if (listener != null) {
+            listener.onFragmentCreated(step, System.nanoTime() - start);
+        }
+    }
+
+    void endFragmentTransaction(long start) {
+        TraceCompat.endSection();
+        if (listener != null) {
+            listener.onFragmentTransaction(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * A step change was requested, it is timed from here, before the step is validated.
+     * A transition still pending is dropped.
+     */
+    void startTransition(int fromStep, int toStep) {
+        cancelTransition();
+        if (listener != null) {
+            transitionPending = true;
+            transitionStart = System.nanoTime();
+            transitionFrom = fromStep;
+            transitionTo = toStep;
+        }
+    }
+
+    /**
+     * The current step changed, timed from the request of this change if there was one.
+     */
+    void onStepChanged(int fromStep, int toStep) {
+        if (!transitionPending || transitionTo != toStep) {
+            startTransition(fromStep, toStep);
+        }
+    }
+
+    /**
+     * The requested step change did not happen, e.g. the step was not valid.
+     */
+    void cancelTransition() {
+        transitionPending = false;
+        stopWaitingForDraw();
+    }
+
+    /**
+     * A content container left the list, a transition waiting for it to be drawn is dropped.
+     */
+    void onContentRecycled(View view) {
+        if (view != null && view == drawnView) {
+            cancelTransition();
+        }
+    }
+
+    /**
+     * The content of the current step is in place, the transition ends with the next drawn frame.
+     */
+    void onContentCommitted(View view) {
+        if (transitionPending && drawnView == null) {
+            drawnView = view;
+            view.getViewTreeObserver().addOnPreDrawListener(this);
+        }
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        stopWaitingForDraw();
+        if (transitionPending && listener != null) {
+            transitionPending = false;
+            listener.onStepTransition(transitionFrom, transitionTo, System.nanoTime() - transitionStart);
+        }
+        return true;
+    }
+
+    private void stopWaitingForDraw() {
+        if (drawnView != null) {
+            ViewTreeObserver observer = drawnView.getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnPreDrawListener(this);
+            }
+            drawnView = null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+/**
+ * Receives timings of {@link SteppersView} on the main thread, for performance monitoring.
+ * All durations are in nanoseconds. Matching {@link android.os.Trace} sections are emitted
+ * whether or not a listener is set.
+ */
+public interface StepperMetricsListener {
+
+    /**
+     * A row was bound, fully or partially.
+     */
+    void onRowBound(int position, long durationNanos);
+
+    /**
+     * {@link StepperAdapter#getFragment(int)} returned the fragment of a step.
+     */
+    void onFragmentCreated(int step, long durationNanos);
+
+    /**
+     * Fragments of the steps were added, shown, detached or removed, including the commit.
+     */
+    void onFragmentTransaction(long durationNanos);
+
+    /**
+     * The content of a new current step was drawn for the first time, measured from the request of the
+     * step change, so it includes validating the step before it. A transition superseded by another step
+     * change, or whose row is recycled before it is drawn, is not reported.
+     */
+    void onStepTransition(int fromStep, int toStep, long durationNanos);
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.annotation.ColorInt;
+import android.support.v4.content.ContextCompat;
+
+import com.github.kubatatami.steppers.R;
+
+/**
+ * Immutable set of colors and text sizes of a {@link SteppersView}. One instance can be shared
+ * by any number of views; applying it rebinds only the style of the rows.
+ */
+public final class StepperStyle {
+
+    private final int circleActiveColor;
+    private final int circleInactiveColor;
+    private final int circleDoneColor;
+    private final int circleErrorColor;
+    private final int labelActiveTextColor;
+    private final int labelInactiveTextColor;
+    private final int labelDoneTextColor;
+    private final int subLabelActiveTextColor;
+    private final int subLabelInactiveTextColor;
+    private final int subLabelDoneTextColor;
+    private final int labelTextSize;
+    private final int subLabelTextSize;
+
+    private StepperStyle(Builder builder) {
+        circleActiveColor = builder.circleActiveColor;
+        circleInactiveColor = builder.circleInactiveColor;
+        circleDoneColor = builder.circleDoneColor;
+        circleErrorColor = builder.circleErrorColor;
+        labelActiveTextColor = builder.labelActiveTextColor;
+        labelInactiveTextColor = builder.labelInactiveTextColor;
+        labelDoneTextColor = builder.labelDoneTextColor;
+        subLabelActiveTextColor = builder.subLabelActiveTextColor;
+        subLabelInactiveTextColor = builder.subLabelInactiveTextColor;
+        subLabelDoneTextColor = builder.subLabelDoneTextColor;
+        labelTextSize = builder.labelTextSize;
+        subLabelTextSize = builder.subLabelTextSize;
+    }
+
+    /**
+     * @return builder initialized with this style
+     */
+    public Builder buildUpon() {
+        return new Builder(this, null);
+    }
+
+    @ColorInt
+    public int getCircleActiveColor() {
+        return circleActiveColor;
+    }
+
+    @ColorInt
+    public int getCircleInactiveColor() {
+        return circleInactiveColor;
+    }
+
+    @ColorInt
+    public int getCircleDoneColor() {
+        return circleDoneColor;
+    }
+
+    @ColorInt
+    public int getCircleErrorColor() {
+        return circleErrorColor;
+    }
+
+    @ColorInt
+    public int getLabelActiveTextColor() {
+        return labelActiveTextColor;
+    }
+
+    @ColorInt
+    public int getLabelInactiveTextColor() {
+        return labelInactiveTextColor;
+    }
+
+    @ColorInt
+    public int getLabelDoneTextColor() {
+        return labelDoneTextColor;
+    }
+
+    @ColorInt
+    public int getSubLabelActiveTextColor() {
+        return subLabelActiveTextColor;
+    }
+
+    @ColorInt
+    public int getSubLabelInactiveTextColor() {
+        return subLabelInactiveTextColor;
+    }
+
+    @ColorInt
+    public int getSubLabelDoneTextColor() {
+        return subLabelDoneTextColor;
+    }
+
+    public int getLabelTextSize() {
+        return labelTextSize;
+    }
+
+    public int getSubLabelTextSize() {
+        return subLabelTextSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StepperStyle)) {
+            return false;
+        }
+        StepperStyle that = (StepperStyle) o;
+        return circleActiveColor == that.circleActiveColor
+                && circleInactiveColor == that.circleInactiveColor
+                && circleDoneColor == that.circleDoneColor
+                && circleErrorColor == that.circleErrorColor
+                && labelActiveTextColor == that.labelActiveTextColor
+                && labelInactiveTextColor == that.labelInactiveTextColor
+                && labelDoneTextColor == that.labelDoneTextColor
+                && subLabelActiveTextColor == that.subLabelActiveTextColor
+                && subLabelInactiveTextColor == that.subLabelInactiveTextColor
+                && subLabelDoneTextColor == that.subLabelDoneTextColor
+                && labelTextSize == that.labelTextSize
+                && subLabelTextSize == that.subLabelTextSize;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = circleActiveColor;
+        result = 31 * result + circleInactiveColor;
+        result = 31 * result + circleDoneColor;
+        result = 31 * result + circleErrorColor;
+        result = 31 * result + labelActiveTextColor;
+        result = 31 * result + labelInactiveTextColor;
+        result = 31 * result + labelDoneTextColor;
+        result = 31 * result + subLabelActiveTextColor;
+        result = 31 * result + subLabelInactiveTextColor;
+        result = 31 * result + subLabelDoneTextColor;
+        result = 31 * result + labelTextSize;
+        result = 31 * result + subLabelTextSize;
+        return result;
+    }
+
+    public static final class Builder {
+
+        private final SteppersView target;
+        private int circleActiveColor;
+        private int circleInactiveColor;
+        private int circleDoneColor;
+        private int circleErrorColor;
+        private int labelActiveTextColor;
+        private int labelInactiveTextColor;
+        private int labelDoneTextColor;
+        private int subLabelActiveTextColor;
+        private int subLabelInactiveTextColor;
+        private int subLabelDoneTextColor;
+        private int labelTextSize;
+        private int subLabelTextSize;
+
+        /**
+         * Creates a builder initialized with the library's default colors and text sizes.
+         */
+        public Builder(Context context) {
+            this.target = null;
+            Resources resources = context.getResources();
+            circleActiveColor = ContextCompat.getColor(context, R.color.colorPrimary);
+            circleInactiveColor = ContextCompat.getColor(context, R.color.colorDisableTextDark);
+            circleDoneColor = ContextCompat.getColor(context, R.color.colorPrimary);
+            circleErrorColor = ContextCompat.getColor(context, R.color.colorError);
+            labelActiveTextColor = ContextCompat.getColor(context, R.color.colorPrimaryTextDark);
+            labelInactiveTextColor = ContextCompat.getColor(context, R.color.colorDisableTextDark);
+            labelDoneTextColor = ContextCompat.getColor(context, R.color.colorPrimaryTextDark);
+            subLabelActiveTextColor = ContextCompat.getColor(context, R.color.colorSecondaryTextDark);
+            subLabelInactiveTextColor = ContextCompat.getColor(context, R.color.colorDisableTextDark);
+            subLabelDoneTextColor = ContextCompat.getColor(context, R.color.colorSecondaryTextDark);
+            labelTextSize = resources.getDimensionPixelSize(R.dimen.label_text_size);
+            subLabelTextSize = resources.getDimensionPixelSize(R.dimen.sub_label_text_size);
+        }
+
+        Builder(StepperStyle style, SteppersView target) {
+            this.target = target;
+            circleActiveColor = style.circleActiveColor;
+            circleInactiveColor = style.circleInactiveColor;
+            circleDoneColor = style.circleDoneColor;
+            circleErrorColor = style.circleErrorColor;
+            labelActiveTextColor = style.labelActiveTextColor;
+            labelInactiveTextColor = style.labelInactiveTextColor;
+            labelDoneTextColor = style.labelDoneTextColor;
+            subLabelActiveTextColor = style.subLabelActiveTextColor;
+            subLabelInactiveTextColor = style.subLabelInactiveTextColor;
+            subLabelDoneTextColor = style.subLabelDoneTextColor;
+            labelTextSize = style.labelTextSize;
+            subLabelTextSize = style.subLabelTextSize;
+        }
+
+        public Builder setCircleActiveColor(@ColorInt int circleActiveColor) {
+            this.circleActiveColor = circleActiveColor;
+            return this;
+        }
+
+        public Builder setCircleInactiveColor(@ColorInt int circleInactiveColor) {
+            this.circleInactiveColor = circleInactiveColor;
+            return this;
+        }
+
+        public Builder setCircleDoneColor(@ColorInt int circleDoneColor) {
+            this.circleDoneColor = circleDoneColor;
+            return this;
+        }
+
+        public Builder setCircleErrorColor(@ColorInt int circleErrorColor) {
+            this.circleErrorColor = circleErrorColor;
+            return this;
+        }
+
+        public Builder setLabelActiveTextColor(@ColorInt int labelActiveTextColor) {
+            this.labelActiveTextColor = labelActiveTextColor;
+            return this;
+        }
+
+        public Builder setLabelInactiveTextColor(@ColorInt int labelInactiveTextColor) {
+            this.labelInactiveTextColor = labelInactiveTextColor;
+            return this;
+        }
+
+        public Builder setLabelDoneTextColor(@ColorInt int labelDoneTextColor) {
+            this.labelDoneTextColor = labelDoneTextColor;
+            return this;
+        }
+
+        public Builder setSubLabelActiveTextColor(@ColorInt int subLabelActiveTextColor) {
+            this.subLabelActiveTextColor = subLabelActiveTextColor;
+            return this;
+        }
+
+        public Builder setSubLabelInactiveTextColor(@ColorInt int subLabelInactiveTextColor) {
+            this.subLabelInactiveTextColor = subLabelInactiveTextColor;
+            return this;
+        }
+
+        public Builder setSubLabelDoneTextColor(@ColorInt int subLabelDoneTextColor) {
+            this.subLabelDoneTextColor = subLabelDoneTextColor;
+            return this;
+        }
+
+        public Builder setLabelTextSize(int labelTextSize) {
+            this.labelTextSize = labelTextSize;
+            return this;
+        }
+
+        public Builder setSubLabelTextSize(int subLabelTextSize) {
+            this.subLabelTextSize = subLabelTextSize;
+            return this;
+        }
+
+        public StepperStyle build() {
+            return new StepperStyle(this);
+        }
+
+        /**
+         * Sets the built style to the view which returned this builder from {@link SteppersView#edit()}.
+         */
+        public void apply() {
+            if (target == null) {
+                throw new IllegalStateException("Builder is not bound to a SteppersView, use build()");
+            }
+            target.setStyle(build());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+import com.github.kubatatami.steppers.R;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Resolved {@link SteppersView} attributes. They only depend on the theme, the default style
+ * attribute and the attribute set, so they are resolved once for each combination and shared.
+ * Must be used on the main thread.
+ */
+final class SteppersAttributes {
+
+    private static final WeakHashMap<Resources.Theme, Map<String, SteppersAttributes>> CACHE = new WeakHashMap<>();
+
+    final StepperStyle style;
+    final boolean backByTap;
+    final boolean flatRows;
+    final boolean railDecoration;
+    final int retainedStepCount;
+    final boolean prefetchNextStep;
+    final boolean prefetchPreviousStep;
+    final int preInflatedRowCount;
+    final int initialPrefetchStepCount;
+    final int savedStateCacheSize;
+    final int savedStateBudget;
+    final boolean collapseDoneSteps;
+    final boolean collapseNextSteps;
+    final int pinnedContentHeight;
+
+    static SteppersAttributes obtain(Context context, AttributeSet attrs, int defStyle) {
+        Resources.Theme theme = context.getTheme();
+        Map<String, SteppersAttributes> themeCache = CACHE.get(theme);
+        if (themeCache == null) {
+            themeCache = new HashMap<>();
+            CACHE.put(theme, themeCache);
+        }
+        String key = makeKey(attrs, defStyle);
+        SteppersAttributes attributes = themeCache.get(key);
+        if (attributes == null) {
+            attributes = new SteppersAttributes(context, attrs, defStyle);
+            themeCache.put(key, attributes);
+        }
+        return attributes;
+    }
+
+    /**
+     * Drops resolved attributes, resources may resolve differently after a configuration change.
+     */
+    static void clearCache() {
+        CACHE.clear();
+    }
+
+    private static String makeKey(AttributeSet attrs, int defStyle) {
+        StringBuilder key = new StringBuilder().append(defStyle);
+        if (attrs != null) {
+            for (int i = 0; i < attrs.getAttributeCount(); i++) {
+                int nameResource = attrs.getAttributeNameResource(i);
+                key.append('|');
+                if (nameResource != 0) {
+                    key.append(nameResource);
+                } else {
+                    key.append(attrs.getAttributeName(i));
+                }
+                key.append('=').append(attrs.getAttributeValue(i));
+            }
+        }
+        return key.toString();
+    }
+
+    private SteppersAttributes(Context context, AttributeSet attrs, int defStyle) {
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SteppersView, defStyle, 0);
+        StepperStyle defaults = new StepperStyle.Builder(context).build();
+        style = defaults.buildUpon()
+                .setCircleDoneColor(a.getColor(R.styleable.SteppersView_circleDoneColor, defaults.getCircleDoneColor()))
+                .setCircleActiveColor(a.getColor(R.styleable.SteppersView_circleActiveColor, defaults.getCircleActiveColor()))
+                .setCircleErrorColor(a.getColor(R.styleable.SteppersView_circleErrorColor, defaults.getCircleErrorColor()))
+                .setCircleInactiveColor(a.getColor(R.styleable.SteppersView_circleInactiveColor, defaults.getCircleInactiveColor()))
+                .setLabelActiveTextColor(a.getColor(R.styleable.SteppersView_labelActiveTextColor, defaults.getLabelActiveTextColor()))
+                .setLabelInactiveTextColor(a.getColor(R.styleable.SteppersView_labelInactiveTextColor, defaults.getLabelInactiveTextColor()))
+                .setLabelDoneTextColor(a.getColor(R.styleable.SteppersView_labelDoneTextColor, defaults.getLabelDoneTextColor()))
+                .setSubLabelActiveTextColor(a.getColor(R.styleable.SteppersView_subLabelActiveTextColor, defaults.getSubLabelActiveTextColor()))
+                .setSubLabelInactiveTextColor(a.getColor(R.styleable.SteppersView_subLabelInactiveTextColor, defaults.getSubLabelInactiveTextColor()))
+                .setSubLabelDoneTextColor(a.getColor(R.styleable.SteppersView_subLabelDoneTextColor, defaults.getSubLabelDoneTextColor()))
+                .setLabelTextSize(a.getDimensionPixelSize(R.styleable.SteppersView_labelTextSize, defaults.getLabelTextSize()))
+                .setSubLabelTextSize(a.getDimensionPixelSize(R.styleable.SteppersView_subLabelTextSize, defaults.getSubLabelTextSize()))
+                .build();
+        backByTap = a.getBoolean(R.styleable.SteppersView_backByTap, true);
+        flatRows = a.getBoolean(R.styleable.SteppersView_flatRows, false);
+        railDecoration = a.getBoolean(R.styleable.SteppersView_railDecoration, false);
+        retainedStepCount = a.getInt(R.styleable.SteppersView_retainedStepCount, 0);
+        prefetchNextStep = a.getBoolean(R.styleable.SteppersView_prefetchNextStep, false);
+        prefetchPreviousStep = a.getBoolean(R.styleable.SteppersView_prefetchPreviousStep, false);
+        preInflatedRowCount = a.getInt(R.styleable.SteppersView_preInflatedRowCount, 0);
+        initialPrefetchStepCount = a.getInt(R.styleable.SteppersView_initialPrefetchStepCount, 0);
+        savedStateCacheSize = a.getInt(R.styleable.SteppersView_savedStateCacheSize, StepStateCache.DEFAULT_MAX_SIZE);
+        savedStateBudget = a.getInt(R.styleable.SteppersView_savedStateBudget, SteppersView.DEFAULT_SAVED_STATE_BUDGET);
+        collapseDoneSteps = a.getBoolean(R.styleable.SteppersView_collapseDoneSteps, false);
+        collapseNextSteps = a.getBoolean(R.styleable.SteppersView_collapseNextSteps, false);
+        pinnedContentHeight = a.getDimensionPixelSize(R.styleable.SteppersView_pinnedContentHeight, 0);
+        a.recycle();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors shared by all steppers: a small pool of low priority background threads for
+ * work that must stay off the main thread, a separate thread for loading pages of steps,
+ * whose I/O must not delay validation or diffing, and the main thread for delivering results.
+ */
+final class SteppersExecutors {
+
+    private static final int BACKGROUND_THREADS = 2;
+
+    private static final int PAGING_THREADS = 1;
+
+    private static ExecutorService background;
+    private static ExecutorService paging;
+    private static Handler mainHandler;
+
+    private SteppersExecutors() {
+    }
+
+    static synchronized ExecutorService background() {
+        if (background == null) {
+            background = newPool(BACKGROUND_THREADS, "Steppers #");
+        }
+        return background;
+    }
+
+    static synchronized ExecutorService paging() {
+        if (paging == null) {
+            paging = newPool(PAGING_THREADS, "Steppers paging #");
+        }
+        return paging;
+    }
+
+    private static ExecutorService newPool(int threads, final String namePrefix) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, namePrefix + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    static synchronized Handler mainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+}
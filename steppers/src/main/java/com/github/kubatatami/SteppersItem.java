@@ -19,13 +19,35 @@ package com.github.kubatatami;
 import android.support.v4.app.Fragment;
 
 import java.util.Observable;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SteppersItem extends Observable {
 
+    private static final AtomicLong NEXT_ID = new AtomicLong(Long.MIN_VALUE);
+
+    private final long id;
     private String label;
     private String subLabel;
     private Fragment fragment;
 
+    /**
+     * Creates an item with a generated id, which only matches this instance.
+     */
+    public SteppersItem() {
+        this(NEXT_ID.getAndIncrement());
+    }
+
+    /**
+     * @param id identity of the step, used to match steps when a new list is submitted
+     */
+    public SteppersItem(long id) {
+        this.id = id;
+    }
+
+    public long getId() {
+        return id;
+    }
+
     public String getLabel() {
         return label;
     }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import android.support.v4.app.Fragment;
+import android.support.v7.util.DiffUtil;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adapter over a submitted list of {@link SteppersItem}s. Ids and labels are copied when the
+ * adapter is created, so two adapters can be diffed on a background thread.
+ */
+final class SteppersItemAdapter implements StableStepperAdapter {
+
+    private final List<SteppersItem> items;
+    private final long[] ids;
+    private final String[] labels;
+    private final String[] subLabels;
+
+    SteppersItemAdapter(List<SteppersItem> items) {
+        this.items = new ArrayList<>(items);
+        int count = this.items.size();
+        ids = new long[count];
+        labels = new String[count];
+        subLabels = new String[count];
+        for (int i = 0; i < count; i++) {
+            SteppersItem item = this.items.get(i);
+            ids[i] = item.getId();
+            labels[i] = item.getLabel();
+            subLabels[i] = item.getSubLabel();
+        }
+    }
+
+    @Override
+    public long getStepId(int step) {
+        return ids[step];
+    }
+
+    @Override
+    public String getLabel(int step) {
+        return items.get(step).getLabel();
+    }
+
+    @Override
+    public String getSubLabel(int step) {
+        return items.get(step).getSubLabel();
+    }
+
+    @Override
+    public Fragment getFragment(int step) {
+        return items.get(step).getFragment();
+    }
+
+    @Override
+    public int getStepCount() {
+        return items.size();
+    }
+
+    /**
+     * Safe to call on any thread.
+     */
+    DiffUtil.DiffResult diff(final SteppersItemAdapter newAdapter) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return ids.length;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newAdapter.ids.length;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return ids[oldItemPosition] == newAdapter.ids[newItemPosition];
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return TextUtils.equals(labels[oldItemPosition], newAdapter.labels[newItemPosition])
+                        && TextUtils.equals(subLabels[oldItemPosition], newAdapter.subLabels[newItemPosition]);
+            }
+
+            @Override
+            public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+                return InternalSteppersAdapter.Payload.LABEL;
+            }
+        });
+    }
+}
@@ -17,46 +17,67 @@
 package com.github.kubatatami;
 
 import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.content.res.Configuration;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.ColorInt;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
-import android.support.v4.content.ContextCompat;
+import android.support.v4.util.LongSparseArray;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SimpleItemAnimator;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
 import com.github.kubatatami.steppers.R;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class SteppersView extends FrameLayout {
 
+    private static final String TAG = "SteppersView";
+
+    static final int DEFAULT_SAVED_STATE_BUDGET = 64 * 1024;
+
     private InternalSteppersAdapter internalSteppersAdapter;
     private FragmentManager fragmentManager;
-    private List<OnStepChangedListener> onStepChangedListeners = new ArrayList<>();
-    private int circleActiveColor;
-    private int circleInactiveColor;
-    private int circleDoneColor;
-    private int labelActiveTextColor;
-    private int labelInactiveTextColor;
-    private int labelDoneTextColor;
-    private int subLabelActiveTextColor;
-    private int subLabelInactiveTextColor;
-    private int subLabelDoneTextColor;
-    private int labelTextSize;
-    private int subLabelTextSize;
+    private final StepTransitionDispatcher transitionDispatcher = new StepTransitionDispatcher(this);
+    private StepperStyle style;
     private boolean backByTap;
+    private boolean subLabelFollowsState;
+    private boolean flatRows;
+    private boolean railDecoration;
+    private StepRailDecoration stepRailDecoration;
+    private int retainedStepCount;
+    private boolean prefetchNextStep;
+    private boolean prefetchPreviousStep;
+    private int preInflatedRowCount;
+    private int savedStateCacheSize;
+    private int savedStateBudget;
+    private boolean collapseDoneSteps;
+    private boolean collapseNextSteps;
+    private int initialPrefetchStepCount;
+    private int pinnedContentHeight;
+    private PinnedContentHost pinnedContentHost;
+    private RecyclerView.RecycledViewPool recycledViewPool;
+    private RecyclerView recyclerView;
+    private StepperMetricsListener metricsListener;
+    private StepValidator stepValidator;
+    private OnValidationFailedListener onValidationFailedListener;
+    private ComponentCallbacks2 trimMemoryCallbacks;
 
     public SteppersView(Context context) {
         super(context);
+        style = new StepperStyle.Builder(context).build();
+        savedStateCacheSize = StepStateCache.DEFAULT_MAX_SIZE;
+        savedStateBudget = DEFAULT_SAVED_STATE_BUDGET;
     }
 
     public SteppersView(Context context, AttributeSet attrs) {
@@ -77,20 +98,21 @@ public class SteppersView extends FrameLayout {
     }
 
     private void loadAttrs(AttributeSet attrs, int defStyle) {
-        TypedArray a = getContext().obtainStyledAttributes(attrs, R.styleable.SteppersView, defStyle, 0);
-        circleDoneColor = a.getColor(R.styleable.SteppersView_circleDoneColor, ContextCompat.getColor(getContext(), R.color.colorPrimary));
-        circleActiveColor = a.getColor(R.styleable.SteppersView_circleActiveColor, ContextCompat.getColor(getContext(), R.color.colorPrimary));
-        circleInactiveColor = a.getColor(R.styleable.SteppersView_circleInactiveColor, ContextCompat.getColor(getContext(), R.color.colorDisableTextDark));
-        labelActiveTextColor = a.getColor(R.styleable.SteppersView_labelActiveTextColor, ContextCompat.getColor(getContext(), R.color.colorPrimaryTextDark));
-        labelInactiveTextColor = a.getColor(R.styleable.SteppersView_labelInactiveTextColor, ContextCompat.getColor(getContext(), R.color.colorDisableTextDark));
-        labelDoneTextColor = a.getColor(R.styleable.SteppersView_labelDoneTextColor, ContextCompat.getColor(getContext(), R.color.colorPrimaryTextDark));
-        subLabelActiveTextColor = a.getColor(R.styleable.SteppersView_subLabelActiveTextColor, ContextCompat.getColor(getContext(), R.color.colorSecondaryTextDark));
-        subLabelInactiveTextColor = a.getColor(R.styleable.SteppersView_subLabelInactiveTextColor, ContextCompat.getColor(getContext(), R.color.colorDisableTextDark));
-        subLabelDoneTextColor = a.getColor(R.styleable.SteppersView_subLabelDoneTextColor, ContextCompat.getColor(getContext(), R.color.colorSecondaryTextDark));
-        labelTextSize = a.getDimensionPixelSize(R.styleable.SteppersView_labelTextSize, getResources().getDimensionPixelSize(R.dimen.label_text_size));
-        subLabelTextSize = a.getDimensionPixelSize(R.styleable.SteppersView_subLabelTextSize, getResources().getDimensionPixelSize(R.dimen.sub_label_text_size));
-        backByTap = a.getBoolean(R.styleable.SteppersView_backByTap, true);
-        a.recycle();
+        SteppersAttributes a = SteppersAttributes.obtain(getContext(), attrs, defStyle);
+        style = a.style;
+        backByTap = a.backByTap;
+        flatRows = a.flatRows;
+        railDecoration = a.railDecoration;
+        retainedStepCount = a.retainedStepCount;
+        prefetchNextStep = a.prefetchNextStep;
+        prefetchPreviousStep = a.prefetchPreviousStep;
+        preInflatedRowCount = a.preInflatedRowCount;
+        savedStateCacheSize = a.savedStateCacheSize;
+        savedStateBudget = a.savedStateBudget;
+        collapseDoneSteps = a.collapseDoneSteps;
+        collapseNextSteps = a.collapseNextSteps;
+        initialPrefetchStepCount = a.initialPrefetchStepCount;
+        pinnedContentHeight = a.pinnedContentHeight;
     }
 
     public void notifyDataSetChanged() {
@@ -99,6 +121,37 @@ public class SteppersView extends FrameLayout {
         }
     }
 
+    /**
+     * Steps of a {@link StableStepperAdapter} keep their fragments and the current step
+     * when notified this way; other adapters keep the current step position.
+     */
+    public void notifyStepsInserted(int step, int count) {
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.notifyStepsInserted(step, count);
+        }
+    }
+
+    public void notifyStepsRemoved(int step, int count) {
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.notifyStepsRemoved(step, count);
+        }
+    }
+
+    public void notifyStepMoved(int fromStep, int toStep) {
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.notifyStepMoved(fromStep, toStep);
+        }
+    }
+
+    /**
+     * Rebinds only label and sub label of the given step.
+     */
+    public void notifyStepLabelChanged(int step) {
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.notifyLabelChanged(step);
+        }
+    }
+
     public void setAdapter(StepperAdapter adapter) {
         if (fragmentManager != null && internalSteppersAdapter == null) {
             build();
@@ -106,6 +159,18 @@ public class SteppersView extends FrameLayout {
         internalSteppersAdapter.setAdapter(adapter);
     }
 
+    /**
+     * Replaces the steps with the given ones, animating the difference which is computed on
+     * a background thread. Steps are matched by {@link SteppersItem#getId()} and the current
+     * step stays on its item.
+     */
+    public void submitSteps(List<SteppersItem> steps) {
+        if (fragmentManager != null && internalSteppersAdapter == null) {
+            build();
+        }
+        internalSteppersAdapter.submitSteps(steps);
+    }
+
     public void setFragmentManager(FragmentManager fragmentManager) {
         this.fragmentManager = fragmentManager;
         if (internalSteppersAdapter == null) {
@@ -113,12 +178,27 @@ public class SteppersView extends FrameLayout {
         }
     }
 
+    /**
+     * Called once per frame at most, after the current step changed.
+     */
     public void addOnStepChangedListener(OnStepChangedListener onStepChangedListener) {
-        onStepChangedListeners.add(onStepChangedListener);
+        transitionDispatcher.addChangedListener(onStepChangedListener);
     }
 
     public void removeOnStepChangedListener(OnStepChangedListener onStepChangedListener) {
-        onStepChangedListeners.remove(onStepChangedListener);
+        transitionDispatcher.removeChangedListener(onStepChangedListener);
+    }
+
+    /**
+     * Called once per frame at most, after the current step changed, with the step before
+     * the changes in that frame and the cause of the last one.
+     */
+    public void addOnStepTransitionListener(OnStepTransitionListener onStepTransitionListener) {
+        transitionDispatcher.addTransitionListener(onStepTransitionListener);
+    }
+
+    public void removeOnStepTransitionListener(OnStepTransitionListener onStepTransitionListener) {
+        transitionDispatcher.removeTransitionListener(onStepTransitionListener);
     }
 
     public Fragment getStepFragment(int step) {
@@ -145,136 +225,527 @@ public class SteppersView extends FrameLayout {
         internalSteppersAdapter.prevStep();
     }
 
+    /**
+     * Validates the current step in the background before {@link #nextStep()} advances from it.
+     * Results are kept until {@link #invalidateStepValidation(int)} is called for the step.
+     */
+    /**
+     * Called when the validation of a step fails, after the step is marked with {@link StepStatus#ERROR}.
+     */
+    public void setOnValidationFailedListener(OnValidationFailedListener onValidationFailedListener) {
+        this.onValidationFailedListener = onValidationFailedListener;
+    }
+
+    public void setStepValidator(StepValidator stepValidator) {
+        this.stepValidator = stepValidator;
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.setStepValidator(stepValidator);
+        }
+    }
+
+    /**
+     * Call when the input of the step changes, so it is validated again.
+     */
+    public void invalidateStepValidation(int step) {
+        internalSteppersAdapter.invalidateStepValidation(step);
+    }
+
+    public StepStatus getStepStatus(int step) {
+        return internalSteppersAdapter.getStepStatus(step);
+    }
+
+    /**
+     * Marks the step as done or not, independently of the current step. Moving forward marks
+     * the steps passed as done and moving back reopens the steps between.
+     */
+    public void setStepDone(int step, boolean done) {
+        internalSteppersAdapter.setStepDone(step, done);
+    }
+
+    /**
+     * Skipped steps are shown as passed, without the check mark.
+     */
+    public void setStepSkipped(int step, boolean skipped) {
+        internalSteppersAdapter.setStepSkipped(step, skipped);
+    }
+
+    /**
+     * Steps in error show an exclamation mark in {@link #getCircleErrorColor()}, also when current.
+     */
+    public void setStepError(int step, boolean error) {
+        internalSteppersAdapter.setStepError(step, error);
+    }
+
     public int getStepCount() {
-        return internalSteppersAdapter.getItemCount();
+        return internalSteppersAdapter.getStepCount();
+    }
+
+    /**
+     * Applies all colors and text sizes at once, rebinding only the style of the rows.
+     */
+    public void setStyle(StepperStyle style) {
+        if (!this.style.equals(style)) {
+            this.style = style;
+            if (internalSteppersAdapter != null) {
+                internalSteppersAdapter.notifyStyleChanged();
+            }
+        }
+    }
+
+    public StepperStyle getStyle() {
+        return style;
+    }
+
+    /**
+     * @return builder initialized with the current style, whose {@link StepperStyle.Builder#apply()}
+     * sets the edited style to this view
+     */
+    public StepperStyle.Builder edit() {
+        return new StepperStyle.Builder(style, this);
     }
 
     public void setCircleActiveColor(@ColorInt int circleActiveColor) {
-        this.circleActiveColor = circleActiveColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setCircleActiveColor(circleActiveColor).build());
     }
 
     public void setCircleInactiveColor(@ColorInt int circleInactiveColor) {
-        this.circleInactiveColor = circleInactiveColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setCircleInactiveColor(circleInactiveColor).build());
     }
 
     public void setCircleDoneColor(@ColorInt int circleDoneColor) {
-        this.circleDoneColor = circleDoneColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setCircleDoneColor(circleDoneColor).build());
+    }
+
+    public void setCircleErrorColor(@ColorInt int circleErrorColor) {
+        setStyle(style.buildUpon().setCircleErrorColor(circleErrorColor).build());
     }
 
     public void setLabelActiveTextColor(@ColorInt int labelActiveTextColor) {
-        this.labelActiveTextColor = labelActiveTextColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setLabelActiveTextColor(labelActiveTextColor).build());
     }
 
     public void setLabelInactiveTextColor(@ColorInt int labelInactiveTextColor) {
-        this.labelInactiveTextColor = labelInactiveTextColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setLabelInactiveTextColor(labelInactiveTextColor).build());
     }
 
     public void setLabelDoneTextColor(@ColorInt int labelDoneTextColor) {
-        this.labelDoneTextColor = labelDoneTextColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setLabelDoneTextColor(labelDoneTextColor).build());
     }
 
     public void setSubLabelActiveTextColor(@ColorInt int subLabelActiveTextColor) {
-        this.subLabelActiveTextColor = subLabelActiveTextColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setSubLabelActiveTextColor(subLabelActiveTextColor).build());
     }
 
     public void setSubLabelInactiveTextColor(@ColorInt int subLabelInactiveTextColor) {
-        this.subLabelInactiveTextColor = subLabelInactiveTextColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setSubLabelInactiveTextColor(subLabelInactiveTextColor).build());
     }
 
     public void setSubLabelDoneTextColor(@ColorInt int subLabelDoneTextColor) {
-        this.subLabelDoneTextColor = subLabelDoneTextColor;
-        notifyDataSetChanged();
+        setStyle(style.buildUpon().setSubLabelDoneTextColor(subLabelDoneTextColor).build());
     }
 
     public void setLabelTextSize(int labelTextSize) {
-        this.labelTextSize = labelTextSize;
+        setStyle(style.buildUpon().setLabelTextSize(labelTextSize).build());
     }
 
     public void setSubLabelTextSize(int subLabelTextSize) {
-        this.subLabelTextSize = subLabelTextSize;
+        setStyle(style.buildUpon().setSubLabelTextSize(subLabelTextSize).build());
+    }
+
+    /**
+     * Reads sub labels of the steps again whenever their state changes, for adapters whose
+     * sub labels describe it. Otherwise labels are only read on bind and label notifications.
+     */
+    public void setSubLabelFollowsState(boolean subLabelFollowsState) {
+        this.subLabelFollowsState = subLabelFollowsState;
+    }
+
+    public boolean isSubLabelFollowsState() {
+        return subLabelFollowsState;
     }
 
     public void setBackByTap(boolean backByTap) {
         this.backByTap = backByTap;
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.notifyStateChanged();
+        }
+    }
+
+    /**
+     * Draws each step as a single view instead of inflating {@code item_steppers}.
+     * The content container is then only created for the active step.
+     */
+    public void setFlatRows(boolean flatRows) {
+        this.flatRows = flatRows;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Draws the rail lines and circles of all steps in one pass over the list, so rows only
+     * contain their texts and content. Not used with {@link #setFlatRows(boolean)}, whose rows
+     * draw their own rail.
+     */
+    public void setRailDecoration(boolean railDecoration) {
+        this.railDecoration = railDecoration;
+        if (recyclerView != null) {
+            updateRailDecoration();
+        }
         notifyDataSetChanged();
     }
 
+    /**
+     * Shows the current step's content with the given height in a container pinned below the step's
+     * header, outside of the list, so a scrolling list inside the content keeps recycling its rows
+     * instead of being laid out in full. Prefetching steps is not used in this mode. 0 disables it.
+     */
+    public void setPinnedContentHeight(int pinnedContentHeight) {
+        this.pinnedContentHeight = pinnedContentHeight;
+        if (recyclerView != null) {
+            updatePinnedContentHost();
+            internalSteppersAdapter.notifyStateChanged();
+        }
+    }
+
+    public int getPinnedContentHeight() {
+        return pinnedContentHeight;
+    }
+
+    ViewGroup getPinnedContentHost() {
+        return pinnedContentHost;
+    }
+
+    private void updatePinnedContentHost() {
+        if (pinnedContentHeight > 0 && pinnedContentHost == null) {
+            pinnedContentHost = new PinnedContentHost(getContext(), internalSteppersAdapter, recyclerView);
+            addView(pinnedContentHost, new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, pinnedContentHeight));
+        } else if (pinnedContentHeight > 0) {
+            ViewGroup.LayoutParams layoutParams = pinnedContentHost.getLayoutParams();
+            layoutParams.height = pinnedContentHeight;
+            pinnedContentHost.setLayoutParams(layoutParams);
+        } else if (pinnedContentHost != null) {
+            removeView(pinnedContentHost);
+            pinnedContentHost = null;
+        }
+    }
+
+    private void updateRailDecoration() {
+        if (railDecoration && stepRailDecoration == null) {
+            stepRailDecoration = new StepRailDecoration(getContext());
+            recyclerView.addItemDecoration(stepRailDecoration);
+        } else if (!railDecoration && stepRailDecoration != null) {
+            recyclerView.removeItemDecoration(stepRailDecoration);
+            stepRailDecoration = null;
+        }
+    }
+
+    /**
+     * Keeps fragments of up to {@code retainedStepCount} steps around the current one detached
+     * instead of removing them, so going back and forth does not recreate them. The least
+     * recently shown ones are removed first, and all of them when the system trims memory.
+     */
+    public void setRetainedStepCount(int retainedStepCount) {
+        this.retainedStepCount = retainedStepCount;
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.setRetainedStepCount(retainedStepCount);
+        }
+    }
+
+    /**
+     * Fragments removed from steps which are not current keep their saved state, up to the given
+     * total size in bytes, and get it back when their step is shown again. 0 disables it.
+     */
+    public void setSavedStateCacheSize(int savedStateCacheSize) {
+        this.savedStateCacheSize = savedStateCacheSize;
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.setSavedStateCacheSize(savedStateCacheSize);
+        }
+    }
+
+    public int getSavedStateCacheSize() {
+        return savedStateCacheSize;
+    }
+
+    /**
+     * Reports bind, fragment and step transition timings, e.g. to a performance dashboard.
+     */
+    public void setMetricsListener(StepperMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.setMetricsListener(metricsListener);
+        }
+    }
+
+    /**
+     * Limits the size in bytes of the state saved by this view. Step ids and states of steps
+     * far from the current one are left out when they do not fit.
+     */
+    public void setSavedStateBudget(int savedStateBudget) {
+        this.savedStateBudget = savedStateBudget;
+    }
+
+    public int getSavedStateBudget() {
+        return savedStateBudget;
+    }
+
+    /**
+     * Creates the next step's fragment while the main thread is idle and keeps it hidden
+     * in its row, so {@link #nextStep()} only has to show it.
+     */
+    public void setPrefetchNextStep(boolean prefetchNextStep) {
+        this.prefetchNextStep = prefetchNextStep;
+        updatePrefetch();
+    }
+
+    /**
+     * Same as {@link #setPrefetchNextStep(boolean)} for the previous step.
+     */
+    public void setPrefetchPreviousStep(boolean prefetchPreviousStep) {
+        this.prefetchPreviousStep = prefetchPreviousStep;
+        updatePrefetch();
+    }
+
+    /**
+     * Folds done steps before the one preceding the current step into a single summary row,
+     * which expands in place when tapped. Changing the step folds them again.
+     */
+    public void setCollapseDoneSteps(boolean collapseDoneSteps) {
+        this.collapseDoneSteps = collapseDoneSteps;
+        updateCollapsedSteps();
+    }
+
+    public boolean isCollapseDoneSteps() {
+        return collapseDoneSteps;
+    }
+
+    /**
+     * Same as {@link #setCollapseDoneSteps(boolean)} for steps more than two after the current one.
+     */
+    public void setCollapseNextSteps(boolean collapseNextSteps) {
+        this.collapseNextSteps = collapseNextSteps;
+        updateCollapsedSteps();
+    }
+
+    public boolean isCollapseNextSteps() {
+        return collapseNextSteps;
+    }
+
+    private void updateCollapsedSteps() {
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.setCollapsedSteps(collapseDoneSteps, collapseNextSteps);
+        }
+    }
+
+    /**
+     * Shares row views with other {@link SteppersView}s using the same pool, for example
+     * steppers on the pages of a {@code ViewPager}.
+     */
+    public void setRecycledViewPool(RecyclerView.RecycledViewPool recycledViewPool) {
+        this.recycledViewPool = recycledViewPool;
+        if (recyclerView != null) {
+            initRecycledViewPool();
+        }
+    }
+
+    public RecyclerView.RecycledViewPool getRecycledViewPool() {
+        return recycledViewPool;
+    }
+
+    /**
+     * Number of rows inflated on a background thread when the view is built, before its first layout.
+     * Must be set before {@link #setFragmentManager(FragmentManager)}.
+     */
+    public void setPreInflatedRowCount(int preInflatedRowCount) {
+        this.preInflatedRowCount = preInflatedRowCount;
+    }
+
+    public int getPreInflatedRowCount() {
+        return preInflatedRowCount;
+    }
+
+    /**
+     * Number of steps the layout manager prepares ahead when the stepper is nested in another scrolling list.
+     */
+    public void setInitialPrefetchStepCount(int initialPrefetchStepCount) {
+        this.initialPrefetchStepCount = initialPrefetchStepCount;
+        if (recyclerView != null) {
+            ((LinearLayoutManager) recyclerView.getLayoutManager()).setInitialPrefetchItemCount(initialPrefetchStepCount);
+        }
+    }
+
+    public int getInitialPrefetchStepCount() {
+        return initialPrefetchStepCount;
+    }
+
+    private void updatePrefetch() {
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.setPrefetch(prefetchNextStep, prefetchPreviousStep);
+        }
+    }
+
     @ColorInt
     public int getCircleActiveColor() {
-        return circleActiveColor;
+        return style.getCircleActiveColor();
     }
 
     @ColorInt
     public int getCircleInactiveColor() {
-        return circleInactiveColor;
+        return style.getCircleInactiveColor();
     }
 
     @ColorInt
     public int getCircleDoneColor() {
-        return circleDoneColor;
+        return style.getCircleDoneColor();
+    }
+
+    @ColorInt
+    public int getCircleErrorColor() {
+        return style.getCircleErrorColor();
     }
 
     @ColorInt
     public int getLabelActiveTextColor() {
-        return labelActiveTextColor;
+        return style.getLabelActiveTextColor();
     }
 
     @ColorInt
     public int getLabelInactiveTextColor() {
-        return labelInactiveTextColor;
+        return style.getLabelInactiveTextColor();
     }
 
     @ColorInt
     public int getLabelDoneTextColor() {
-        return labelDoneTextColor;
+        return style.getLabelDoneTextColor();
     }
 
     @ColorInt
     public int getSubLabelActiveTextColor() {
-        return subLabelActiveTextColor;
+        return style.getSubLabelActiveTextColor();
     }
 
     @ColorInt
     public int getSubLabelInactiveTextColor() {
-        return subLabelInactiveTextColor;
+        return style.getSubLabelInactiveTextColor();
     }
 
     @ColorInt
     public int getSubLabelDoneTextColor() {
-        return subLabelDoneTextColor;
+        return style.getSubLabelDoneTextColor();
     }
 
     public int getLabelTextSize() {
-        return labelTextSize;
+        return style.getLabelTextSize();
     }
 
     public int getSubLabelTextSize() {
-        return subLabelTextSize;
+        return style.getSubLabelTextSize();
     }
 
     public boolean isBackByTap() {
         return backByTap;
     }
 
+    public boolean isFlatRows() {
+        return flatRows;
+    }
+
+    public boolean isRailDecoration() {
+        return railDecoration;
+    }
+
+    public int getRetainedStepCount() {
+        return retainedStepCount;
+    }
+
+    public boolean isPrefetchNextStep() {
+        return prefetchNextStep;
+    }
+
+    public boolean isPrefetchPreviousStep() {
+        return prefetchPreviousStep;
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        SteppersAttributes.clearCache();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            registerTrimMemoryCallbacks();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.cancelPendingFragmentChanges();
+        }
+        if (trimMemoryCallbacks != null) {
+            unregisterTrimMemoryCallbacks();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void unregisterTrimMemoryCallbacks() {
+        getContext().getApplicationContext().unregisterComponentCallbacks(trimMemoryCallbacks);
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerTrimMemoryCallbacks() {
+        if (trimMemoryCallbacks == null) {
+            trimMemoryCallbacks = new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                        onLowMemory();
+                    }
+                }
+
+                @Override
+                public void onLowMemory() {
+                    if (internalSteppersAdapter != null) {
+                        internalSteppersAdapter.releaseRetainedFragments();
+                    }
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+            };
+        }
+        getContext().getApplicationContext().registerComponentCallbacks(trimMemoryCallbacks);
+    }
+
     @Override
     protected Parcelable onSaveInstanceState() {
         Parcelable superState = super.onSaveInstanceState();
-        return new SavedState(superState, getCurrentStep());
+        if (internalSteppersAdapter == null) {
+            return superState;
+        }
+        SavedState savedState = new SavedState(superState, getCurrentStep(), internalSteppersAdapter.getCurrentStepId());
+        savedState.layoutState = recyclerView.getLayoutManager().onSaveInstanceState();
+        internalSteppersAdapter.saveState(savedState, savedStateBudget - StepStateCache.measure(savedState.layoutState));
+        return savedState;
     }
 
     @Override
     protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
         SavedState savedState = (SavedState) state;
         super.onRestoreInstanceState(savedState.getSuperState());
-        setStep(savedState.getCurrentStep());
+        if (internalSteppersAdapter != null) {
+            internalSteppersAdapter.restoreState(savedState);
+            if (savedState.layoutState != null) {
+                recyclerView.getLayoutManager().onRestoreInstanceState(savedState.layoutState);
+            }
+        }
     }
 
     private void build() {
@@ -283,55 +754,172 @@ public class SteppersView extends FrameLayout {
     }
 
     private void initRecyclerView() {
-        RecyclerView recyclerView = new RecyclerView(getContext());
+        recyclerView = new RecyclerView(getContext());
         LayoutParams layoutParams = new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
         recyclerView.setLayoutParams(layoutParams);
         recyclerView.setClipToPadding(false);
         recyclerView.setPadding(0,0,0, getResources().getDimensionPixelSize(R.dimen.item_text_margin_top));
         recyclerView.setHasFixedSize(true);
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        // rows are rebound in place, so a step's content container is never shown twice
+        ((SimpleItemAnimator) recyclerView.getItemAnimator()).setSupportsChangeAnimations(false);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        layoutManager.setInitialPrefetchItemCount(initialPrefetchStepCount);
+        recyclerView.setLayoutManager(layoutManager);
+        if (recycledViewPool != null) {
+            initRecycledViewPool();
+        }
+        updateRailDecoration();
         recyclerView.setAdapter(internalSteppersAdapter);
+        if (preInflatedRowCount > 0) {
+            internalSteppersAdapter.preInflateRows(recyclerView, preInflatedRowCount);
+        }
         addView(recyclerView);
+        updatePinnedContentHost();
+    }
+
+    private void initRecycledViewPool() {
+        // rows go back to the shared pool when this view is detached
+        ((LinearLayoutManager) recyclerView.getLayoutManager()).setRecycleChildrenOnDetach(true);
+        recyclerView.setRecycledViewPool(recycledViewPool);
     }
 
     private void initAdapter() {
         internalSteppersAdapter = new InternalSteppersAdapter(this, fragmentManager);
-        internalSteppersAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
-            @Override
-            public void onItemRangeChanged(int positionStart, int itemCount) {
-                invokeStepChangedListeners(getCurrentStep());
-            }
-        });
+        internalSteppersAdapter.setRetainedStepCount(retainedStepCount);
+        internalSteppersAdapter.setPrefetch(prefetchNextStep, prefetchPreviousStep);
+        internalSteppersAdapter.setCollapsedSteps(collapseDoneSteps, collapseNextSteps);
+        internalSteppersAdapter.setSavedStateCacheSize(savedStateCacheSize);
+        internalSteppersAdapter.setMetricsListener(metricsListener);
+        internalSteppersAdapter.setStepValidator(stepValidator);
     }
 
-    private void invokeStepChangedListeners(int step) {
-        for(OnStepChangedListener onStepChangedListener : onStepChangedListeners) {
-            onStepChangedListener.onStepChanged(step);
+    void onStepChanged(int step, StepTransitionCause cause) {
+        transitionDispatcher.onStepChanged(step, cause);
+    }
+
+    void onValidationFailed(int step, Throwable error) {
+        if (onValidationFailedListener != null) {
+            onValidationFailedListener.onValidationFailed(step, error);
+        } else if (error != null) {
+            Log.e(TAG, "Validation of step " + step + " failed", error);
         }
     }
 
+    /**
+     * Besides the current step keeps the ids and completion of all steps, the states of
+     * {@link StatefulStepperAdapter} steps nearest to the current one and the scroll position,
+     * as far as they fit in {@link #setSavedStateBudget(int)}.
+     */
     protected static class SavedState extends BaseSavedState {
 
+        /** Written before the version, states of older releases start with the non negative current step. */
+        static final int MAGIC = 0xC57E99E5;
+        static final int VERSION = 3;
+
         int currentStep;
+        long currentStepId = RecyclerView.NO_ID;
+        long[] stepIds;
+        long[] doneSteps;
+        long[] skippedSteps;
+        long[] errorSteps;
+        LongSparseArray<Bundle> stepStates;
+        Parcelable layoutState;
 
         public SavedState(Parcel source) {
             super(source);
+            int marker = source.readInt();
+            if (marker != MAGIC) {
+                // older releases saved just the current step
+                currentStep = Math.max(marker, 0);
+                return;
+            }
+            int version = source.readInt();
+            int length = source.readInt();
+            int end = source.dataPosition() + length;
+            if (version == VERSION) {
+                readPayload(source);
+            }
+            // states of other versions are skipped whole, so the view states after them are read right
+            source.setDataPosition(end);
+        }
+
+        private void readPayload(Parcel source) {
             currentStep = source.readInt();
+            currentStepId = source.readLong();
+            stepIds = source.createLongArray();
+            doneSteps = source.createLongArray();
+            skippedSteps = source.createLongArray();
+            errorSteps = source.createLongArray();
+            int stateCount = source.readInt();
+            if (stateCount > 0) {
+                stepStates = new LongSparseArray<>(stateCount);
+                for (int i = 0; i < stateCount; i++) {
+                    long stepId = source.readLong();
+                    stepStates.put(stepId, source.readBundle(SavedState.class.getClassLoader()));
+                }
+            }
+            layoutState = source.readParcelable(RecyclerView.class.getClassLoader());
         }
 
-        public SavedState(Parcelable superState, int currentStep) {
+        public SavedState(Parcelable superState, int currentStep, long currentStepId) {
             super(superState);
             this.currentStep = currentStep;
+            this.currentStepId = currentStepId;
         }
 
         public int getCurrentStep() {
             return currentStep;
         }
 
+        public long getCurrentStepId() {
+            return currentStepId;
+        }
+
+        boolean isStepDone(int index) {
+            return isSet(doneSteps, index);
+        }
+
+        boolean isStepSkipped(int index) {
+            return isSet(skippedSteps, index);
+        }
+
+        boolean isStepError(int index) {
+            return isSet(errorSteps, index);
+        }
+
+        private static boolean isSet(long[] bits, int index) {
+            return bits != null && index >> 6 < bits.length && (bits[index >> 6] & (1L << index)) != 0;
+        }
+
         @Override
         public void writeToParcel(Parcel out, int flags) {
             super.writeToParcel(out, flags);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int lengthPosition = out.dataPosition();
+            out.writeInt(0);
+            int start = out.dataPosition();
+            writePayload(out, flags);
+            int end = out.dataPosition();
+            out.setDataPosition(lengthPosition);
+            out.writeInt(end - start);
+            out.setDataPosition(end);
+        }
+
+        private void writePayload(Parcel out, int flags) {
             out.writeInt(currentStep);
+            out.writeLong(currentStepId);
+            out.writeLongArray(stepIds);
+            out.writeLongArray(doneSteps);
+            out.writeLongArray(skippedSteps);
+            out.writeLongArray(errorSteps);
+            int stateCount = stepStates != null ? stepStates.size() : 0;
+            out.writeInt(stateCount);
+            for (int i = 0; i < stateCount; i++) {
+                out.writeLong(stepStates.keyAt(i));
+                out.writeBundle(stepStates.valueAt(i));
+            }
+            out.writeParcelable(layoutState, flags);
         }
 
         public static final Parcelable.Creator<SavedState> CREATOR = new Creator<SavedState>() {
@@ -350,4 +938,17 @@ public class SteppersView extends FrameLayout {
         void onStepChanged(int step);
     }
 
+    public interface OnValidationFailedListener {
+
+        /**
+         * @param error thrown by the {@link StepValidator}, or null if it found the step invalid
+         */
+        void onValidationFailed(int step, Throwable error);
+    }
+
+    public interface OnStepTransitionListener {
+
+        void onStepTransition(int previousStep, int newStep, StepTransitionCause cause);
+    }
+
 }
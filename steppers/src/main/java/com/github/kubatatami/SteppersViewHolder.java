@@ -16,8 +16,13 @@
 
 package com.github.kubatatami;
 
+import android.graphics.Typeface;
+import android.support.v4.content.ContextCompat;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.util.TypedValue;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
@@ -26,7 +31,20 @@ import com.github.kubatatami.steppers.R;
 
 public class SteppersViewHolder extends RecyclerView.ViewHolder {
 
+    private static final int UNSET = -1;
+    private static final int ERROR = -2;
+    private static final String ERROR_TEXT = "!";
+
     private boolean isChecked;
+    private int circleNumber = UNSET;
+    private int labelColor;
+    private int subLabelColor;
+    private boolean labelColorSet;
+    private boolean subLabelColorSet;
+    private boolean labelBold;
+    private boolean labelBoldSet;
+    private Typeface normalTypeface;
+    private Typeface boldTypeface;
 
     protected View itemView;
     protected RoundedView roundedView;
@@ -35,17 +53,60 @@ public class SteppersViewHolder extends RecyclerView.ViewHolder {
     protected FrameLayout frameLayout;
     protected View viewLineAbove;
     protected View viewLineBottom;
+    protected StepRowView stepRowView;
+    protected TextView textViewSummary;
+    InternalSteppersAdapter owner;
+    /** Circle of a row without circle and line views, drawn by {@link StepRailDecoration}. */
+    StepCircle railCircle;
+    boolean railLineAbove = true;
+    boolean railLineBelow = true;
+
+    /**
+     * Holder of a row which summarizes collapsed steps.
+     */
+    SteppersViewHolder(View itemView, TextView textViewSummary) {
+        super(itemView);
+        this.itemView = itemView;
+        this.textViewSummary = textViewSummary;
+    }
 
     public SteppersViewHolder(View itemView) {
         super(itemView);
         this.itemView = itemView;
+        if (itemView instanceof StepRowView) {
+            this.stepRowView = (StepRowView) itemView;
+            return;
+        }
         this.roundedView = (RoundedView) itemView.findViewById(R.id.roundedView);
+        if (roundedView == null) {
+            railCircle = new StepCircle(itemView.getContext(), ContextCompat.getColor(itemView.getContext(), R.color.colorPrimary));
+        }
         this.textViewLabel = (TextView) itemView.findViewById(R.id.textViewLabel);
         this.textViewSubLabel = (TextView) itemView.findViewById(R.id.textViewSubLabel);
         this.frameLayout = (FrameLayout) itemView.findViewById(R.id.frameLayout);
         this.frameLayout.setId(ViewIdGenerator.generateViewId());
         this.viewLineAbove = itemView.findViewById(R.id.viewLineAbove);
         this.viewLineBottom = itemView.findViewById(R.id.viewLineBottom);
+        this.normalTypeface = textViewLabel.getTypeface();
+        this.boldTypeface = Typeface.create(normalTypeface, Typeface.BOLD);
+    }
+
+    boolean isSummary() {
+        return textViewSummary != null;
+    }
+
+    void setSummary(String text, int color, float textSize) {
+        if (!TextUtils.equals(textViewSummary.getText(), text)) {
+            textViewSummary.setText(text);
+        }
+        if (!subLabelColorSet || subLabelColor != color) {
+            subLabelColorSet = true;
+            subLabelColor = color;
+            textViewSummary.setTextColor(color);
+        }
+        if (textViewSummary.getTextSize() != textSize) {
+            textViewSummary.setTextSize(TypedValue.COMPLEX_UNIT_PX, textSize);
+        }
     }
 
     /**
@@ -58,4 +119,242 @@ public class SteppersViewHolder extends RecyclerView.ViewHolder {
     public void setChecked(boolean checked) {
         isChecked = checked;
     }
+
+    void setCircleChecked() {
+        circleNumber = UNSET;
+        if (stepRowView != null) {
+            stepRowView.setCircleChecked(true);
+        } else if (railCircle != null) {
+            onRailChanged(railCircle.setChecked(true));
+        } else {
+            roundedView.setChecked(true);
+        }
+    }
+
+    void setCirclePending(boolean pending) {
+        if (stepRowView != null) {
+            stepRowView.setCirclePending(pending);
+        } else if (railCircle != null) {
+            onRailChanged(railCircle.setPending(pending));
+        } else {
+            roundedView.setPending(pending);
+        }
+    }
+
+    void setCircleError() {
+        if (circleNumber == ERROR) {
+            return;
+        }
+        circleNumber = ERROR;
+        if (stepRowView != null) {
+            stepRowView.setCircleChecked(false);
+            stepRowView.setCircleText(ERROR_TEXT);
+        } else if (railCircle != null) {
+            onRailChanged(railCircle.setText(ERROR_TEXT));
+        } else {
+            roundedView.setChecked(false);
+            roundedView.setText(ERROR_TEXT);
+        }
+    }
+
+    /**
+     * Shows the one based number of the step in the circle.
+     */
+    void setCircleText(int step) {
+        if (circleNumber == step) {
+            return;
+        }
+        circleNumber = step;
+        String text = String.valueOf(step + 1);
+        if (stepRowView != null) {
+            stepRowView.setCircleChecked(false);
+            stepRowView.setCircleText(text);
+        } else if (railCircle != null) {
+            onRailChanged(railCircle.setText(text));
+        } else {
+            roundedView.setChecked(false);
+            roundedView.setText(text);
+        }
+    }
+
+    void setCircleColor(int color) {
+        if (stepRowView != null) {
+            stepRowView.setCircleColor(color);
+        } else if (railCircle != null) {
+            onRailChanged(railCircle.setColor(color));
+        } else {
+            roundedView.setCircleColor(color);
+        }
+    }
+
+    void setLabelStyle(int color, boolean bold) {
+        if (stepRowView != null) {
+            stepRowView.setLabelStyle(color, bold);
+        } else {
+            if (!labelColorSet || labelColor != color) {
+                labelColorSet = true;
+                labelColor = color;
+                textViewLabel.setTextColor(color);
+            }
+            if (!labelBoldSet || labelBold != bold) {
+                labelBoldSet = true;
+                labelBold = bold;
+                textViewLabel.setTypeface(bold ? boldTypeface : normalTypeface);
+            }
+        }
+    }
+
+    void setSubLabelColor(int color) {
+        if (stepRowView != null) {
+            stepRowView.setSubLabelColor(color);
+        } else if (!subLabelColorSet || subLabelColor != color) {
+            subLabelColorSet = true;
+            subLabelColor = color;
+            textViewSubLabel.setTextColor(color);
+        }
+    }
+
+    void setTextLayoutCache(StepTextLayoutCache textLayoutCache) {
+        if (stepRowView != null) {
+            stepRowView.setTextLayoutCache(textLayoutCache);
+        }
+    }
+
+    void setLabel(int step, String label, String subLabel) {
+        if (stepRowView != null) {
+            stepRowView.setLabel(step, label, subLabel);
+        } else {
+            if (!TextUtils.equals(textViewLabel.getText(), label)) {
+                textViewLabel.setText(label);
+            }
+            if (!TextUtils.equals(textViewSubLabel.getText(), subLabel)) {
+                textViewSubLabel.setText(subLabel);
+            }
+        }
+    }
+
+    void setSubLabel(int step, String subLabel) {
+        if (stepRowView != null) {
+            stepRowView.setSubLabel(step, subLabel);
+        } else if (!TextUtils.equals(textViewSubLabel.getText(), subLabel)) {
+            textViewSubLabel.setText(subLabel);
+        }
+    }
+
+    void setTextSizes(float labelTextSize, float subLabelTextSize) {
+        if (stepRowView != null) {
+            stepRowView.setTextSizes(labelTextSize, subLabelTextSize);
+        } else {
+            if (textViewLabel.getTextSize() != labelTextSize) {
+                textViewLabel.setTextSize(TypedValue.COMPLEX_UNIT_PX, labelTextSize);
+            }
+            if (textViewSubLabel.getTextSize() != subLabelTextSize) {
+                textViewSubLabel.setTextSize(TypedValue.COMPLEX_UNIT_PX, subLabelTextSize);
+            }
+        }
+    }
+
+    void setLinesVisible(boolean above, boolean below) {
+        if (stepRowView != null) {
+            stepRowView.setLinesVisible(above, below);
+        } else if (railCircle != null) {
+            onRailChanged(railLineAbove != above || railLineBelow != below);
+            railLineAbove = above;
+            railLineBelow = below;
+        } else {
+            viewLineAbove.setVisibility(above ? View.VISIBLE : View.INVISIBLE);
+            viewLineBottom.setVisibility(below ? View.VISIBLE : View.INVISIBLE);
+        }
+    }
+
+    /**
+     * The rail is drawn by the list, which has to be redrawn when it changes.
+     */
+    private void onRailChanged(boolean changed) {
+        if (changed && itemView.getParent() instanceof View) {
+            ((View) itemView.getParent()).invalidate();
+        }
+    }
+
+    void setContentContainerId(int id) {
+        if (frameLayout != null && frameLayout.getId() != id) {
+            frameLayout.setId(id);
+        }
+    }
+
+    /**
+     * Sets the height of the content container; a fixed one leaves room for pinned content.
+     */
+    void setContentHeight(int height) {
+        if (frameLayout == null) {
+            return;
+        }
+        ViewGroup.LayoutParams layoutParams = frameLayout.getLayoutParams();
+        if (layoutParams.height != height) {
+            layoutParams.height = height;
+            frameLayout.setLayoutParams(layoutParams);
+        }
+    }
+
+    /**
+     * Empties the content container of a recycled row.
+     */
+    void releaseContent() {
+        if (frameLayout != null && frameLayout.getChildCount() > 0) {
+            frameLayout.removeAllViews();
+        }
+        if (frameLayout instanceof StepContentLayout) {
+            ((StepContentLayout) frameLayout).cancelReveal();
+        }
+    }
+
+    /**
+     * Makes sure the row has a content container, without showing it.
+     */
+    FrameLayout prepareContentContainer(int id) {
+        if (stepRowView != null && stepRowView.getContentContainer() == null) {
+            stepRowView.ensureContentContainer().setVisibility(View.GONE);
+            frameLayout = stepRowView.getContentContainer();
+        }
+        setContentContainerId(id);
+        return frameLayout;
+    }
+
+    /**
+     * Shows or hides the step content. Flattened rows create their content container
+     * the first time they are shown as the active step.
+     */
+    void setContentVisible(boolean visible) {
+        setContentVisible(visible, 0);
+    }
+
+    /**
+     * Same as {@link #setContentVisible(boolean)}, revealing newly shown content over the given duration.
+     * The row gets its final height right away, so the list lays out once and moves the following rows
+     * with its item animator; the content is clipped to a growing height, starting once it is attached
+     * with {@link #startReveal()}.
+     */
+    void setContentVisible(boolean visible, long revealDuration) {
+        boolean wasVisible = frameLayout != null && frameLayout.getVisibility() == View.VISIBLE;
+        if (stepRowView != null) {
+            stepRowView.setContentVisible(visible);
+            frameLayout = stepRowView.getContentContainer();
+        } else {
+            frameLayout.setVisibility(visible ? View.VISIBLE : View.GONE);
+        }
+        if (!(frameLayout instanceof StepContentLayout) || visible == wasVisible) {
+            return;
+        }
+        if (visible && revealDuration > 0) {
+            ((StepContentLayout) frameLayout).prepareReveal(revealDuration);
+        } else {
+            ((StepContentLayout) frameLayout).cancelReveal();
+        }
+    }
+
+    void startReveal() {
+        if (frameLayout instanceof StepContentLayout) {
+            ((StepContentLayout) frameLayout).startReveal();
+        }
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StepContentLayoutTest {
+
+    private static final int SCREEN_HEIGHT = 1920;
+
+    @Test
+    public void tallContentIsRevealedOverOneScreen() {
+        int contentHeight = SCREEN_HEIGHT * 3;
+
+        assertEquals(0, StepContentLayout.getRevealHeight(contentHeight, SCREEN_HEIGHT, 0f));
+        assertEquals(SCREEN_HEIGHT / 2, StepContentLayout.getRevealHeight(contentHeight, SCREEN_HEIGHT, 0.5f));
+        assertEquals(SCREEN_HEIGHT, StepContentLayout.getRevealHeight(contentHeight, SCREEN_HEIGHT, 0.9999f));
+        assertEquals(contentHeight, StepContentLayout.getRevealHeight(contentHeight, SCREEN_HEIGHT, 1f));
+    }
+
+    @Test
+    public void shortContentIsRevealedOverItsHeight() {
+        assertEquals(0, StepContentLayout.getRevealHeight(400, SCREEN_HEIGHT, 0f));
+        assertEquals(200, StepContentLayout.getRevealHeight(400, SCREEN_HEIGHT, 0.5f));
+        assertEquals(400, StepContentLayout.getRevealHeight(400, SCREEN_HEIGHT, 1f));
+    }
+
+    @Test
+    public void revealGrowsWithProgress() {
+        int contentHeight = SCREEN_HEIGHT * 3;
+        int previous = 0;
+        for (int i = 0; i <= 100; i++) {
+            int height = StepContentLayout.getRevealHeight(contentHeight, SCREEN_HEIGHT, i / 100f);
+            assertTrue(height >= previous);
+            assertTrue(height <= contentHeight);
+            previous = height;
+        }
+        assertEquals(contentHeight, previous);
+    }
+
+    @Test
+    public void overshootingInterpolatorDoesNotClipAboveContent() {
+        assertEquals(0, StepContentLayout.getRevealHeight(400, SCREEN_HEIGHT, -0.1f));
+    }
+}
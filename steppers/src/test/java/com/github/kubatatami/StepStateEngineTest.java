@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 Jakub Bogacki, Krystian Drożdżyński
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.kubatatami;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StepStateEngineTest {
+
+    private final StepStateEngine engine = new StepStateEngine();
+
+    @Test
+    public void resetCompletesStepsBeforeActive() {
+        assertEquals(bits(0, 1, 2, 3, 4), engine.reset(5, 2));
+
+        assertEquals(StepStatus.DONE, engine.getStatus(0));
+        assertEquals(StepStatus.DONE, engine.getStatus(1));
+        assertEquals(StepStatus.ACTIVE, engine.getStatus(2));
+        assertEquals(StepStatus.INACTIVE, engine.getStatus(3));
+    }
+
+    @Test
+    public void moveForwardCompletesPassedSteps() {
+        engine.reset(5, 0);
+
+        assertEquals(bits(0, 1, 2), engine.moveTo(2));
+
+        assertTrue(engine.isDone(0));
+        assertTrue(engine.isDone(1));
+        assertFalse(engine.isDone(2));
+        assertEquals(2, engine.getActiveStep());
+    }
+
+    @Test
+    public void moveBackReopensStepsBetween() {
+        engine.reset(5, 3);
+
+        assertEquals(bits(1, 2, 3), engine.moveTo(1));
+
+        assertTrue(engine.isDone(0));
+        assertFalse(engine.isDone(1));
+        assertFalse(engine.isDone(2));
+        assertEquals(StepStatus.ACTIVE, engine.getStatus(1));
+    }
+
+    @Test
+    public void moveToActiveStepChangesNothing() {
+        engine.reset(5, 2);
+
+        assertTrue(engine.moveTo(2).isEmpty());
+    }
+
+    @Test
+    public void setActiveKeepsOtherStatuses() {
+        engine.reset(5, 0);
+
+        assertEquals(bits(0, 3), engine.setActive(3));
+
+        assertFalse(engine.isDone(0));
+        assertEquals(StepStatus.INACTIVE, engine.getStatus(1));
+    }
+
+    @Test
+    public void changedOnlyWhenStatusChanges() {
+        engine.reset(5, 2);
+
+        // the active step shows as active whether it is done or not
+        assertTrue(engine.setDone(2, true).isEmpty());
+        assertEquals(bits(3), engine.setSkipped(3, true));
+        assertTrue(engine.setSkipped(3, true).isEmpty());
+        // skipped wins over done
+        assertTrue(engine.setDone(3, true).isEmpty());
+        assertEquals(bits(2), engine.setError(2, true));
+        assertEquals(StepStatus.ERROR, engine.getStatus(2));
+        assertEquals(bits(2), engine.setError(2, false));
+    }
+
+    @Test
+    public void completedStepsAreDoneOrSkipped() {
+        engine.reset(5, 1);
+        engine.setSkipped(3, true);
+
+        assertTrue(engine.isCompleted(0));
+        assertFalse(engine.isCompleted(2));
+        assertTrue(engine.isCompleted(3));
+    }
+
+    @Test
+    public void insertShiftsStatusesAndActiveStep() {
+        engine.reset(5, 3);
+        engine.setError(4, true);
+
+        engine.insertSteps(1, 2);
+
+        assertEquals(7, engine.getStepCount());
+        assertEquals(5, engine.getActiveStep());
+        assertTrue(engine.isDone(0));
+        assertFalse(engine.isDone(1));
+        assertFalse(engine.isDone(2));
+        assertTrue(engine.isDone(3));
+        assertTrue(engine.isDone(4));
+        assertTrue(engine.isError(6));
+    }
+
+    @Test
+    public void insertAfterActiveStepKeepsIt() {
+        engine.reset(5, 1);
+
+        engine.insertSteps(3, 1);
+
+        assertEquals(1, engine.getActiveStep());
+        assertEquals(StepStatus.INACTIVE, engine.getStatus(3));
+    }
+
+    @Test
+    public void removeShiftsStatusesAndActiveStep() {
+        engine.reset(6, 4);
+        engine.setSkipped(5, true);
+
+        engine.removeSteps(1, 2);
+
+        assertEquals(4, engine.getStepCount());
+        assertEquals(2, engine.getActiveStep());
+        assertTrue(engine.isDone(0));
+        assertTrue(engine.isDone(1));
+        assertFalse(engine.isDone(2));
+        assertTrue(engine.isSkipped(3));
+        assertFalse(engine.isSkipped(5));
+    }
+
+    @Test
+    public void removingActiveStepActivatesTheStepInItsPlace() {
+        engine.reset(5, 2);
+
+        engine.removeSteps(2, 1);
+
+        assertEquals(2, engine.getActiveStep());
+
+        engine.removeSteps(2, 2);
+
+        assertEquals(1, engine.getActiveStep());
+    }
+
+    @Test
+    public void moveStepCarriesItsStatus() {
+        engine.reset(5, 4);
+        engine.setSkipped(1, true);
+
+        engine.moveStep(1, 3);
+
+        assertTrue(engine.isSkipped(3));
+        assertFalse(engine.isSkipped(1));
+        assertEquals(4, engine.getActiveStep());
+    }
+
+    @Test
+    public void moveStepAcrossActiveStepShiftsIt() {
+        engine.reset(5, 2);
+
+        engine.moveStep(0, 4);
+
+        assertEquals(1, engine.getActiveStep());
+
+        engine.moveStep(4, 0);
+
+        assertEquals(2, engine.getActiveStep());
+
+        engine.moveStep(2, 4);
+
+        assertEquals(4, engine.getActiveStep());
+    }
+
+    @Test
+    public void shrinkingDropsStatusesPastTheEnd() {
+        engine.reset(5, 4);
+        engine.setError(3, true);
+
+        engine.setStepCount(3);
+
+        assertEquals(2, engine.getActiveStep());
+
+        engine.setStepCount(5);
+
+        assertFalse(engine.isDone(3));
+        assertFalse(engine.isError(3));
+    }
+
+    @Test
+    public void clearStatusesKeepsActiveStep() {
+        engine.reset(5, 3);
+        engine.setSkipped(4, true);
+
+        engine.clearStatuses();
+
+        assertEquals(3, engine.getActiveStep());
+        assertFalse(engine.isDone(0));
+        assertFalse(engine.isSkipped(4));
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}